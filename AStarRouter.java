@@ -0,0 +1,59 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class AStarRouter implements Router {
+    private final Heuristic heuristic; // lower bound on the distance left to the target
+
+    /**
+     * Creates an A* router guided by the given heuristic.
+     *
+     * @param heuristic a consistent lower bound on the distance between two nodes
+     */
+    public AStarRouter(Heuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Runs A* from the source, ordering nodes by their distance from the source plus the estimated distance
+     * left to the target, and stops once the target is settled.
+     */
+    @Override
+    public Path route(Node source, Node target, QueryContextPool pool) {
+        if (source == null || target == null) {
+            throw new NullPointerException("Cannot find shortest path, source or target is null");
+        }
+        Graph graph = source.getGraph();
+        double[] weights = graph.getArcWeights();
+        Heuristic heuristic = this.heuristic.snapshot();
+        int goal = target.getIndex();
+        QueryContext context = pool.acquire();
+        try {
+            NodeQueue queue = context.getQueue();
+            context.update(source.getIndex(), 0, -1);
+            queue.push(source.getIndex(), heuristic.estimate(source.getIndex(), goal));
+            while (!queue.isEmpty()) {
+                int current = queue.poll();
+                context.settle(current);
+                if (current == goal) {
+                    break;
+                }
+                double currentDist = context.getDist(current);
+                for (int arc = graph.getFirstArc(current); arc < graph.getFirstArc(current + 1); arc++) {
+                    int next = graph.getArcTarget(arc);
+                    if (context.isSettled(next)) {
+                        continue;
+                    }
+                    double newDist = currentDist + weights[arc];
+                    if (newDist < context.getDist(next)) {
+                        context.update(next, newDist, graph.getArcEdge(arc));
+                        queue.push(next, newDist + heuristic.estimate(next, goal));
+                    }
+                }
+            }
+            return Graph.shortestPath(source, target, context);
+        } finally {
+            pool.release(context);
+        }
+    }
+}
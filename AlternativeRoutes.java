@@ -0,0 +1,218 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AlternativeRoutes {
+    public static final double STRETCH = 0.25; // alternatives are at most this much longer than the shortest path
+    public static final double OVERLAP = 0.8; // largest share of the shortest distance a new route may repeat
+    public static final double PLATEAU = 0.25; // smallest share of the shortest distance an alternative's plateau
+                                               // must cover, so it is locally a shortest path for that long
+
+    /**
+     * Finds the shortest path between two nodes and up to count - 1 alternatives to it with the plateau method.
+     * One search grows a shortest path tree from the source and another one into the target, both until their
+     * frontiers pass the longest allowed route, (1 + STRETCH) times the shortest distance. A plateau is a
+     * stretch of road that lies on both trees, so any route through it is the tree path from the source to
+     * its start, the plateau and the tree path from its end to the target; a plateau of length L makes that
+     * route a shortest path over every stretch of length L. Plateaus are tried longest first, and a route is
+     * kept if it is no longer than allowed, has a plateau of at least PLATEAU times the shortest distance,
+     * visits no node twice and shares at most OVERLAP times the shortest distance with the routes kept
+     * before. Every candidate is read off the two trees, so the cost is the two searches whatever the count.
+     *
+     * @param source the starting node
+     * @param target the destination node
+     * @param count  the largest number of routes to return, including the shortest path
+     * @param pool   the query contexts the searches use
+     * @return the shortest path followed by the alternatives from the longest plateau down, or an empty list if
+     * the target cannot be reached or the count is below 1
+     */
+    public static List<Path> find(Node source, Node target, int count, QueryContextPool pool) {
+        if (source == null || target == null) {
+            throw new NullPointerException("Cannot find alternative routes, source or target is null");
+        }
+        Graph graph = source.getGraph();
+        QueryContext forward = pool.acquire();
+        QueryContext backward = pool.acquire();
+        try {
+            int[] settled = grow(graph, source.getIndex(), target.getIndex(), forward, backward);
+            double shortest = forward.getDist(target.getIndex());
+            List<Path> routes = new ArrayList<>();
+            if (shortest == Double.POSITIVE_INFINITY || count < 1) {
+                return routes;
+            }
+            Path best = viaPath(source, target, target.getIndex(), forward, backward);
+            routes.add(best);
+            if (count == 1 || shortest == 0) {
+                return routes;
+            }
+
+            // find the end of every plateau, the node nearest the target, and order them longest first
+            long[] candidates = new long[16];
+            int candidateCount = 0;
+            for (int node : settled) {
+                double length = forward.getDist(node) + backward.getDist(node);
+                if (!backward.isSettled(node) || length > (1 + STRETCH) * shortest
+                        || continuesPlateau(graph, node, forward, backward)) {
+                    continue;
+                }
+                double plateau = plateauLength(graph, node, forward, backward);
+                if (plateau >= PLATEAU * shortest) {
+                    if (candidateCount == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, 2 * candidateCount);
+                    }
+                    candidates[candidateCount++] = (long) Float.floatToIntBits((float) plateau) << 32 | node;
+                }
+            }
+            Arrays.sort(candidates, 0, candidateCount);
+
+            int[] keptEdges = best.getEdgeIndices().clone(); // edges of the routes kept so far, sorted
+            Arrays.sort(keptEdges);
+            double[] weights = graph.getEdgeWeights();
+            for (int i = candidateCount - 1; i >= 0 && routes.size() < count; i--) {
+                Path route = viaPath(source, target, (int) candidates[i], forward, backward);
+                if (route == null) {
+                    continue;
+                }
+                double shared = 0;
+                for (int edge : route.getEdgeIndices()) {
+                    if (Arrays.binarySearch(keptEdges, edge) >= 0) {
+                        shared += weights[edge];
+                    }
+                }
+                if (shared > OVERLAP * shortest) {
+                    continue;
+                }
+                routes.add(route);
+                int kept = keptEdges.length;
+                keptEdges = Arrays.copyOf(keptEdges, kept + route.getEdgeIndices().length);
+                System.arraycopy(route.getEdgeIndices(), 0, keptEdges, kept, route.getEdgeIndices().length);
+                Arrays.sort(keptEdges);
+            }
+            return routes;
+        } finally {
+            pool.release(forward);
+            pool.release(backward);
+        }
+    }
+
+    /**
+     * Private helper method that grows both shortest path trees, alternating between them like a bidirectional
+     * search. Once the searches have met, each one stops when its frontier passes the longest allowed route.
+     *
+     * @return the nodes settled by the forward search, in the order they were settled
+     */
+    private static int[] grow(Graph graph, int source, int target, QueryContext forward, QueryContext backward) {
+        double[] weights = graph.getArcWeights();
+        forward.update(source, 0, -1);
+        forward.getQueue().push(source, 0);
+        backward.update(target, 0, -1);
+        backward.getQueue().push(target, 0);
+        double best = source == target ? 0 : Double.POSITIVE_INFINITY;
+        int[] settled = new int[16];
+        while (true) {
+            double limit = (1 + STRETCH) * best;
+            double forwardKey = forward.getQueue().peekKey();
+            double backwardKey = backward.getQueue().peekKey();
+            double key = Math.min(forwardKey, backwardKey);
+            if (key > limit || key == Double.POSITIVE_INFINITY) {
+                break;
+            }
+            boolean forwardTurn = forwardKey <= backwardKey;
+            QueryContext side = forwardTurn ? forward : backward;
+            QueryContext other = forwardTurn ? backward : forward;
+            NodeQueue queue = side.getQueue();
+
+            int current = queue.poll();
+            if (forwardTurn) {
+                if (forward.getSettledCount() == settled.length) {
+                    settled = Arrays.copyOf(settled, 2 * settled.length);
+                }
+                settled[forward.getSettledCount()] = current;
+            }
+            side.settle(current);
+            double currentDist = side.getDist(current);
+            best = Math.min(best, currentDist + other.getDist(current));
+            for (int arc = graph.getFirstArc(current); arc < graph.getFirstArc(current + 1); arc++) {
+                int next = graph.getArcTarget(arc);
+                double newDist = currentDist + weights[arc];
+                if (!side.isSettled(next) && newDist < side.getDist(next)) {
+                    side.update(next, newDist, graph.getArcEdge(arc));
+                    queue.push(next, newDist);
+                }
+            }
+        }
+        return Arrays.copyOf(settled, forward.getSettledCount());
+    }
+
+    /**
+     * Private helper method that tells whether the edge a node takes toward the target in the backward tree is
+     * also the edge the settled forward tree reaches its other end with, so the plateau goes on past the node.
+     */
+    private static boolean continuesPlateau(Graph graph, int node, QueryContext forward, QueryContext backward) {
+        int edge = backward.getPrevEdge(node);
+        if (edge == -1) {
+            return false;
+        }
+        int next = graph.getOtherEnd(edge, node);
+        return forward.isSettled(next) && forward.getPrevEdge(next) == edge;
+    }
+
+    /**
+     * Private helper method that measures the plateau ending at a node by walking the forward tree back while
+     * its edges are also edges of the settled backward tree.
+     */
+    private static double plateauLength(Graph graph, int end, QueryContext forward, QueryContext backward) {
+        int node = end;
+        for (int edge = forward.getPrevEdge(node); edge != -1; edge = forward.getPrevEdge(node)) {
+            int previous = graph.getOtherEnd(edge, node);
+            if (!backward.isSettled(previous) || backward.getPrevEdge(previous) != edge) {
+                break;
+            }
+            node = previous;
+        }
+        return forward.getDist(end) - forward.getDist(node);
+    }
+
+    /**
+     * Private helper method that joins the forward tree path from the source to a node and the backward tree
+     * path from it to the target.
+     *
+     * @return the route, or null if it visits a node twice
+     */
+    private static Path viaPath(Node source, Node target, int via, QueryContext forward, QueryContext backward) {
+        Graph graph = source.getGraph();
+        int before = 0;
+        for (int node = via, edge = forward.getPrevEdge(node); edge != -1; edge = forward.getPrevEdge(node)) {
+            node = graph.getOtherEnd(edge, node);
+            before++;
+        }
+        int after = 0;
+        for (int node = via, edge = backward.getPrevEdge(node); edge != -1; edge = backward.getPrevEdge(node)) {
+            node = graph.getOtherEnd(edge, node);
+            after++;
+        }
+        int[] nodes = new int[before + after + 1];
+        int[] edges = new int[before + after];
+        nodes[before] = via;
+        for (int i = before - 1; i >= 0; i--) {
+            edges[i] = forward.getPrevEdge(nodes[i + 1]);
+            nodes[i] = graph.getOtherEnd(edges[i], nodes[i + 1]);
+        }
+        for (int i = before; i < before + after; i++) {
+            edges[i] = backward.getPrevEdge(nodes[i]);
+            nodes[i + 1] = graph.getOtherEnd(edges[i], nodes[i]);
+        }
+        int[] sorted = nodes.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                return null;
+            }
+        }
+        return new Path(source, target, nodes, edges, forward.getDist(via) + backward.getDist(via));
+    }
+}
@@ -0,0 +1,311 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+public class BatchRunner {
+    private static final int BLOCK_SIZE = 256; // queries handed to a worker at once
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+"); // separates the IDs of a query
+    private final StreetMap map; // the street map whose router answers the queries
+    private final int threads; // number of worker threads
+
+    /**
+     * Creates a batch runner that answers queries with the router of a street map.
+     *
+     * @param map     the street map to route on, its router must be safe to use from many threads
+     * @param threads the number of worker threads
+     */
+    public BatchRunner(StreetMap map, int threads) {
+        this.map = map;
+        this.threads = threads;
+    }
+
+    /**
+     * Answers every query of a file and writes one result line per query, in the order of the file.
+     * Each query line holds a source and a target separated by whitespace, each an intersection ID or a
+     * latitude,longitude coordinate that is snapped to the nearest point on a road, where the route then starts
+     * or ends; blank lines and lines starting with # are skipped. Each result line holds the source, the
+     * target, the distance in miles and the IDs of the intersections on the path, separated by spaces.
+     * Unreachable targets get the distance inf and no IDs, unknown IDs and malformed lines get "error" and a
+     * message.
+     * The file is read in blocks that workers answer in parallel while earlier blocks are written out, and only
+     * a few blocks per worker are in flight at once, so files of any size stream in bounded memory.
+     * A summary of the throughput and latency percentiles is printed to standard error at the end; the
+     * latencies are counted in a histogram of fixed size, so the percentiles are exact to within 2%.
+     *
+     * @param queries the file of queries
+     * @param output  the stream the results are written to
+     * @throws IOException if the query file cannot be read or the results cannot be written
+     */
+    public void run(File queries, OutputStream output) throws IOException {
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(this.threads);
+        BlockingQueue<CompletableFuture<Block>> pending = new ArrayBlockingQueue<>(4 * this.threads);
+        Thread reader = new Thread(() -> this.read(queries, workers, pending), "batch-reader");
+        reader.setDaemon(true); // never keeps the JVM alive if writing fails while it waits on a full queue
+        reader.start();
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        int count = 0;
+        int unreachable = 0;
+        int errors = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 1 << 16);
+        try {
+            while (true) {
+                Block block = pending.take().join();
+                if (block == null) {
+                    break;
+                }
+                writer.append(block.text);
+                for (int i = 0; i < block.count; i++) {
+                    latencies.record(block.latencies[i]);
+                }
+                count += block.count;
+                unreachable += block.unreachable;
+                errors += block.errors;
+            }
+            writer.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while answering " + queries, e);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            throw e;
+        } finally {
+            workers.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Answered %d queries (%d unreachable, %d errors) in %.2fs with %d threads: %.0f queries/s\n",
+                count, unreachable, errors, seconds, this.threads, count / seconds);
+        System.err.printf("Latency p50 %.3fms, p90 %.3fms, p99 %.3fms, max %.3fms\n",
+                latencies.percentile(0.50), latencies.percentile(0.90), latencies.percentile(0.99),
+                latencies.percentile(1.0));
+    }
+
+    /**
+     * Private helper method run by the reader thread. It cuts the query file into blocks, hands each block to
+     * the workers and queues its future in file order, waiting while the queue is full. A null block marks the
+     * end of the file, a failed future a read error.
+     */
+    private void read(File queries, ExecutorService workers, BlockingQueue<CompletableFuture<Block>> pending) {
+        try {
+            try (BufferedReader in = new BufferedReader(new FileReader(queries, StandardCharsets.UTF_8), 1 << 16)) {
+                List<String> lines = new ArrayList<>(BLOCK_SIZE);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String query = line.strip();
+                    if (query.isEmpty() || query.startsWith("#")) {
+                        continue;
+                    }
+                    lines.add(query);
+                    if (lines.size() == BLOCK_SIZE) {
+                        List<String> block = lines;
+                        pending.put(CompletableFuture.supplyAsync(() -> this.answer(block), workers));
+                        lines = new ArrayList<>(BLOCK_SIZE);
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    List<String> block = lines;
+                    pending.put(CompletableFuture.supplyAsync(() -> this.answer(block), workers));
+                }
+                pending.put(CompletableFuture.completedFuture(null));
+            } catch (IOException e) {
+                pending.put(CompletableFuture.failedFuture(new UncheckedIOException(e)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Private helper method run by the workers that answers one block of queries and formats its result lines.
+     */
+    private Block answer(List<String> queries) {
+        Block block = new Block(queries.size());
+        StringBuilder text = new StringBuilder(64 * queries.size());
+        for (String query : queries) {
+            long start = System.nanoTime();
+            String[] ids = WHITESPACE.split(query);
+            Node source = ids.length == 2 ? this.map.getGraph().find(ids[0]) : null;
+            Node target = ids.length == 2 ? this.map.getGraph().find(ids[1]) : null;
+            if (ids.length != 2) {
+                text.append(query).append(" error expected a source and a target\n");
+                block.errors++;
+            } else if (source == null || target == null) {
+                this.answerOnRoads(ids, query, text, block);
+            } else {
+                Path path = this.map.findPath(source, target);
+                text.append(ids[0]).append(' ').append(ids[1]).append(' ');
+                if (path.getNodeIndices() == null) {
+                    text.append("inf");
+                    block.unreachable++;
+                } else {
+                    appendMiles(text, path.getDistance());
+                    appendIds(text, path);
+                }
+                text.append('\n');
+            }
+            block.latencies[block.count++] = System.nanoTime() - start;
+        }
+        block.text = text;
+        return block;
+    }
+
+    /**
+     * Private helper method that answers a query with a coordinate end, which is snapped to the nearest point
+     * on a road so the route can start or end between intersections. The distance includes the parts of the
+     * first and last roads, and the IDs are those of the intersections driven through.
+     */
+    private void answerOnRoads(String[] ids, String query, StringBuilder text, Block block) {
+        RoadPosition start = this.map.locate(ids[0]);
+        RoadPosition end = this.map.locate(ids[1]);
+        if (start == null || end == null) {
+            text.append(query).append(" error unknown intersection or coordinate [")
+                    .append(start == null ? ids[0] : ids[1]).append("]\n");
+            block.errors++;
+            return;
+        }
+        RoadRoute route = this.map.findRoute(start, end);
+        text.append(ids[0]).append(' ').append(ids[1]).append(' ');
+        if (route.getDistance() == Double.POSITIVE_INFINITY) {
+            text.append("inf");
+            block.unreachable++;
+        } else {
+            appendMiles(text, route.getDistance());
+            if (route.getPath() != null) {
+                appendIds(text, route.getPath());
+            }
+        }
+        text.append('\n');
+    }
+
+    /**
+     * Private helper method that appends the IDs of the nodes of a path straight from the ID table.
+     */
+    private void appendIds(StringBuilder text, Path path) {
+        IdTable ids = this.map.getGraph().getNodeIds();
+        for (int node : path.getNodeIndices()) {
+            text.append(' ').append(ids.get(node));
+        }
+    }
+
+    /**
+     * Private helper method that appends a distance with six decimals without going through String.format.
+     */
+    private static void appendMiles(StringBuilder text, double miles) {
+        long micros = Math.round(miles * 1e6);
+        String fraction = Long.toString(micros % 1_000_000);
+        text.append(micros / 1_000_000).append('.');
+        for (int i = fraction.length(); i < 6; i++) {
+            text.append('0');
+        }
+        text.append(fraction);
+    }
+
+    /**
+     * The result lines and statistics of one block of queries.
+     */
+    private static class Block {
+        private StringBuilder text; // the result lines of the block
+        private final long[] latencies; // time taken by each query in nanoseconds
+        private int count; // number of queries answered
+        private int unreachable; // number of queries whose target cannot be reached
+        private int errors; // number of malformed queries or queries with unknown IDs
+
+        private Block(int size) {
+            this.latencies = new long[size];
+        }
+    }
+
+    /**
+     * Query latencies counted in logarithmic buckets, like HdrHistogram: values below 2^SUB_BITS get a bucket
+     * each and every higher power of two is split into 2^SUB_BITS equal buckets, so a bucket is never wider
+     * than 1/64 of the values in it and the counts take a fixed 30 KB however many queries are recorded.
+     */
+    private static class LatencyHistogram {
+        private static final int SUB_BITS = 6; // log2 of the number of buckets each power of two is split into
+        private final long[] counts = new long[(64 - SUB_BITS + 1) << SUB_BITS]; // queries in each bucket
+        private long total; // number of recorded queries
+        private long max; // the largest recorded latency in nanoseconds
+
+        /**
+         * Counts one latency.
+         *
+         * @param nanos the time the query took in nanoseconds
+         */
+        private void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            counts[index(value)]++;
+            total++;
+            max = Math.max(max, value);
+        }
+
+        /**
+         * Returns a percentile of the recorded latencies in milliseconds: the largest value of the bucket
+         * holding it, or the exact largest latency for the last bucket.
+         *
+         * @param fraction the share of latencies at or below the percentile, from 0 to 1
+         * @return the percentile in milliseconds, 0 if nothing was recorded
+         */
+        private double percentile(double fraction) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int index = 0; index < counts.length; index++) {
+                seen += counts[index];
+                if (seen >= rank) {
+                    return Math.min(highest(index), max) / 1e6;
+                }
+            }
+            return max / 1e6;
+        }
+
+        /**
+         * Private helper method that returns the bucket of a non-negative value.
+         */
+        private static int index(long value) {
+            if (value < 1 << SUB_BITS) {
+                return (int) value;
+            }
+            int magnitude = 63 - Long.numberOfLeadingZeros(value); // at least SUB_BITS
+            int shift = magnitude - SUB_BITS;
+            return (shift + 1 << SUB_BITS) + (int) (value >>> shift) - (1 << SUB_BITS);
+        }
+
+        /**
+         * Private helper method that returns the largest value falling in a bucket.
+         */
+        private static long highest(int index) {
+            if (index < 1 << SUB_BITS) {
+                return index;
+            }
+            int shift = (index >>> SUB_BITS) - 1;
+            long lowest = (long) ((1 << SUB_BITS) + (index & (1 << SUB_BITS) - 1)) << shift;
+            return lowest + (1L << shift) - 1;
+        }
+    }
+}
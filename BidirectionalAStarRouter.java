@@ -0,0 +1,89 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class BidirectionalAStarRouter implements Router {
+    private final Heuristic heuristic; // lower bound on the distance between two nodes
+
+    /**
+     * Creates a bidirectional A* router guided by the given heuristic.
+     *
+     * @param heuristic a consistent lower bound on the distance between two nodes
+     */
+    public BidirectionalAStarRouter(Heuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Runs A* from the source and from the target at the same time. Both searches use the average potential
+     * (h(v, target) - h(v, source)) / 2, negated for the backward search, which keeps the two searches consistent
+     * with each other so that the usual bidirectional Dijkstra stopping rule applies. Queue keys are shifted so
+     * that they start at 0 on each side and never decrease, as monotone queues require.
+     */
+    @Override
+    public Path route(Node source, Node target, QueryContextPool pool) {
+        if (source == null || target == null) {
+            throw new NullPointerException("Cannot find shortest path, source or target is null");
+        }
+        Graph graph = source.getGraph();
+        double[] weights = graph.getArcWeights();
+        Heuristic heuristic = this.heuristic.snapshot();
+        int start = source.getIndex();
+        int goal = target.getIndex();
+        QueryContext forward = pool.acquire();
+        QueryContext backward = pool.acquire();
+        try {
+            NodeQueue forwardQueue = forward.getQueue();
+            NodeQueue backwardQueue = backward.getQueue();
+            double sourcePotential = potential(heuristic, start, start, goal);
+            double targetPotential = potential(heuristic, goal, start, goal);
+            forward.update(start, 0, -1);
+            forwardQueue.push(start, 0);
+            backward.update(goal, 0, -1);
+            backwardQueue.push(goal, 0);
+            double best = start == goal ? 0 : Double.POSITIVE_INFINITY;
+            int meeting = start == goal ? start : -1;
+
+            // shifted keys of the two sides add up to a path length minus (targetPotential - sourcePotential)
+            while (forwardQueue.peekKey() + backwardQueue.peekKey() < best + targetPotential - sourcePotential) {
+                boolean forwardTurn = forwardQueue.peekKey() <= backwardQueue.peekKey();
+                QueryContext side = forwardTurn ? forward : backward;
+                QueryContext other = forwardTurn ? backward : forward;
+                NodeQueue queue = side.getQueue();
+
+                int current = queue.poll();
+                side.settle(current);
+                double currentDist = side.getDist(current);
+                for (int arc = graph.getFirstArc(current); arc < graph.getFirstArc(current + 1); arc++) {
+                    int next = graph.getArcTarget(arc);
+                    double newDist = currentDist + weights[arc];
+                    if (!side.isSettled(next) && newDist < side.getDist(next)) {
+                        side.update(next, newDist, graph.getArcEdge(arc));
+                        double potential = potential(heuristic, next, start, goal);
+                        queue.push(next, forwardTurn ? newDist + potential - sourcePotential
+                                : newDist - potential + targetPotential);
+                    }
+                    double through = newDist + other.getDist(next);
+                    if (through < best) {
+                        best = through;
+                        meeting = next;
+                    }
+                }
+            }
+            if (meeting == -1) {
+                return Path.none(source, target);
+            }
+            return Graph.shortestPath(source, target, forward, meeting, backward);
+        } finally {
+            pool.release(forward);
+            pool.release(backward);
+        }
+    }
+
+    /**
+     * Private helper method that returns the forward potential of a node, the backward potential is its negation.
+     */
+    private static double potential(Heuristic heuristic, int node, int source, int target) {
+        return (heuristic.estimate(node, target) - heuristic.estimate(node, source)) / 2;
+    }
+}
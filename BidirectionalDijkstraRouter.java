@@ -0,0 +1,63 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class BidirectionalDijkstraRouter implements Router {
+    /**
+     * Runs Dijkstra's algorithm from the source and from the target at the same time, always growing the side
+     * with the smaller queued distance, and stops once no path through the unsettled nodes can beat the best
+     * meeting point found so far. Roads are undirected, so both searches relax the same arcs.
+     */
+    @Override
+    public Path route(Node source, Node target, QueryContextPool pool) {
+        if (source == null || target == null) {
+            throw new NullPointerException("Cannot find shortest path, source or target is null");
+        }
+        Graph graph = source.getGraph();
+        double[] weights = graph.getArcWeights();
+        QueryContext forward = pool.acquire();
+        QueryContext backward = pool.acquire();
+        try {
+            NodeQueue forwardQueue = forward.getQueue();
+            NodeQueue backwardQueue = backward.getQueue();
+            forward.update(source.getIndex(), 0, -1);
+            forwardQueue.push(source.getIndex(), 0);
+            backward.update(target.getIndex(), 0, -1);
+            backwardQueue.push(target.getIndex(), 0);
+            double best = source.equals(target) ? 0 : Double.POSITIVE_INFINITY;
+            int meeting = source.equals(target) ? source.getIndex() : -1;
+
+            while (forwardQueue.peekKey() + backwardQueue.peekKey() < best) {
+                boolean forwardTurn = forwardQueue.peekKey() <= backwardQueue.peekKey();
+                QueryContext side = forwardTurn ? forward : backward;
+                QueryContext other = forwardTurn ? backward : forward;
+                NodeQueue queue = side.getQueue();
+
+                int current = queue.poll();
+                side.settle(current);
+                double currentDist = side.getDist(current);
+                for (int arc = graph.getFirstArc(current); arc < graph.getFirstArc(current + 1); arc++) {
+                    int next = graph.getArcTarget(arc);
+                    double newDist = currentDist + weights[arc];
+                    if (!side.isSettled(next) && newDist < side.getDist(next)) {
+                        side.update(next, newDist, graph.getArcEdge(arc));
+                        queue.push(next, newDist);
+                    }
+                    // a node reached from both sides joins the two searches into a source-target path
+                    double through = newDist + other.getDist(next);
+                    if (through < best) {
+                        best = through;
+                        meeting = next;
+                    }
+                }
+            }
+            if (meeting == -1) {
+                return Path.none(source, target);
+            }
+            return Graph.shortestPath(source, target, forward, meeting, backward);
+        } finally {
+            pool.release(forward);
+            pool.release(backward);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class ChordHeuristic implements Heuristic {
+    private static final double RADIUS = Node.EARTH_RADIUS_MI * (1 - 1e-9); // shrunk to absorb rounding errors
+    private final double[] points; // unit vector of each node on the sphere, packed as [x0, y0, z0, x1, ...]
+
+    /**
+     * Creates the straight-line heuristic for a graph. The chord through the Earth between two nodes is never
+     * longer than the great-circle arc between them, and differs from it by under 0.01% below 100 mi, so it is
+     * almost as tight as the great-circle distance. All the trigonometry is done once here, leaving three
+     * multiplications and a square root per estimate.
+     *
+     * @param graph the graph whose nodes are estimated
+     */
+    public ChordHeuristic(Graph graph) {
+        this.points = new double[3 * graph.getNodeCount()];
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            double lat = Math.toRadians(graph.getLatitude(node));
+            double lon = Math.toRadians(graph.getLongitude(node));
+            this.points[3 * node] = Math.cos(lat) * Math.cos(lon);
+            this.points[3 * node + 1] = Math.cos(lat) * Math.sin(lon);
+            this.points[3 * node + 2] = Math.sin(lat);
+        }
+    }
+
+    @Override
+    public double estimate(int node, int target) {
+        double dx = points[3 * target] - points[3 * node];
+        double dy = points[3 * target + 1] - points[3 * node + 1];
+        double dz = points[3 * target + 2] - points[3 * node + 2];
+        return RADIUS * Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+public class ConnectedComponents {
+    private final int[] labels; // component of each node, components numbered from the largest down
+    private final int[] sizes; // number of nodes in each component, in decreasing order
+
+    // getters and setters
+    public int getComponent(int node) {
+        return labels[node];
+    }
+
+    public int getComponentCount() {
+        return sizes.length;
+    }
+
+    public int getSize(int component) {
+        return sizes[component];
+    }
+
+    /**
+     * Labels the connected components of a graph with a concurrent union-find over its edges. Every edge
+     * links the roots of its two ends, always the root with the higher index under the one with the lower,
+     * with a compare-and-set that retries if another thread moved either root first, so the edges can be
+     * processed in parallel without locks. Finds point every node they pass at its grandparent, which keeps
+     * the trees shallow. Roads that are closed still connect their ends, since closures change over time while
+     * the labels are computed once.
+     *
+     * @param graph the graph whose components are labelled
+     */
+    public ConnectedComponents(Graph graph) {
+        int nodeCount = graph.getNodeCount();
+        AtomicIntegerArray parents = new AtomicIntegerArray(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            parents.set(node, node);
+        }
+        IntStream.range(0, graph.getEdgeCount()).parallel()
+                .forEach(edge -> union(parents, graph.getEdgeA(edge), graph.getEdgeB(edge)));
+
+        // number the roots, then renumber the components by decreasing size
+        int[] roots = new int[nodeCount];
+        IntStream.range(0, nodeCount).parallel().forEach(node -> roots[node] = find(parents, node));
+        int[] rootLabels = new int[nodeCount];
+        int count = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (roots[node] == node) {
+                rootLabels[node] = count++;
+            }
+        }
+        int[] counts = new int[count];
+        for (int node = 0; node < nodeCount; node++) {
+            counts[rootLabels[roots[node]]]++;
+        }
+        long[] order = new long[count];
+        for (int component = 0; component < count; component++) {
+            order[component] = (long) -counts[component] << 32 | component;
+        }
+        Arrays.sort(order);
+        int[] renumbered = new int[count];
+        this.sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            renumbered[(int) order[i]] = i;
+            this.sizes[i] = counts[(int) order[i]];
+        }
+        this.labels = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            this.labels[node] = renumbered[rootLabels[roots[node]]];
+        }
+    }
+
+    /**
+     * Returns whether two nodes lie in the same connected component, so a path may join them.
+     *
+     * @param a the index of the first node
+     * @param b the index of the second node
+     * @return true if the nodes are connected while no road is closed
+     */
+    public boolean isConnected(int a, int b) {
+        return labels[a] == labels[b];
+    }
+
+    /**
+     * Prints the number of components, the sizes of the two largest and the number of isolated intersections,
+     * so a map file that falls apart into pieces is noticed as soon as it loads.
+     */
+    public void printSummary() {
+        int nodeCount = this.labels.length;
+        int isolated = 0;
+        for (int i = this.sizes.length - 1; i >= 0 && this.sizes[i] == 1; i--) {
+            isolated++;
+        }
+        System.err.printf("Found %d connected components: largest %d intersections (%.1f%%), next largest %d, "
+                        + "%d isolated\n", this.sizes.length, this.sizes.length > 0 ? this.sizes[0] : 0,
+                nodeCount == 0 ? 0 : 100.0 * (this.sizes.length > 0 ? this.sizes[0] : 0) / nodeCount,
+                this.sizes.length > 1 ? this.sizes[1] : 0, isolated);
+    }
+
+    /**
+     * Private helper method that links the components of two nodes, retrying until a compare-and-set on the
+     * higher root succeeds or both nodes share a root.
+     */
+    private static void union(AtomicIntegerArray parents, int a, int b) {
+        while (true) {
+            int rootA = find(parents, a);
+            int rootB = find(parents, b);
+            if (rootA == rootB) {
+                return;
+            }
+            int high = Math.max(rootA, rootB);
+            int low = Math.min(rootA, rootB);
+            if (parents.compareAndSet(high, high, low)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Private helper method that finds the root of a node, pointing each node on the way at its grandparent.
+     */
+    private static int find(AtomicIntegerArray parents, int node) {
+        int parent = parents.get(node);
+        while (parent != node) {
+            int grandparent = parents.get(parent);
+            parents.compareAndSet(node, parent, grandparent);
+            node = parent;
+            parent = grandparent;
+        }
+        return node;
+    }
+}
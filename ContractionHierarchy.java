@@ -0,0 +1,1051 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+public class ContractionHierarchy {
+    private static final int MAGIC = 0x43484950; // "CHIP", marks a serialized hierarchy
+    private static final int FORMAT_VERSION = 1; // bumped whenever the serialized layout changes
+    private static final int WITNESS_SETTLE_LIMIT = 500; // nodes a witness search may settle before giving up
+
+    private final Graph graph; // the graph this hierarchy speeds up
+    private final int[] ranks; // position of each node in the contraction order, higher ranks were contracted later
+    private final int[] firstUp; // index of the first upward arc of each node, with one extra entry marking the end
+    private final int[] upTargets; // higher-ranked node reached by each upward arc
+    private final double[] upWeights; // weight of each upward arc
+    private final int[] upMiddles; // node a shortcut arc skips over, -1 for arcs that are original edges
+    private final int[] upEdges; // original edge of each non-shortcut arc, -1 for shortcuts
+
+    // getters and setters
+    public Graph getGraph() {
+        return graph;
+    }
+
+    public int getRank(int node) {
+        return ranks[node];
+    }
+
+    public int getFirstUp(int node) {
+        return firstUp[node];
+    }
+
+    public int getUpTarget(int arc) {
+        return upTargets[arc];
+    }
+
+    public double[] getUpWeights() {
+        return upWeights;
+    }
+
+    public int getArcCount() {
+        return upTargets.length;
+    }
+
+    /**
+     * Private constructor used by build and load once the upward graph is known.
+     */
+    private ContractionHierarchy(Graph graph, int[] ranks, int[] firstUp, int[] upTargets, double[] upWeights,
+                                 int[] upMiddles, int[] upEdges) {
+        this.graph = graph;
+        this.ranks = ranks;
+        this.firstUp = firstUp;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        this.upEdges = upEdges;
+    }
+
+    /**
+     * Loads the hierarchy of a graph from a cache file, or builds it and writes the cache file if the file is
+     * missing, unreadable or was built from a different graph.
+     *
+     * @param graph the graph to speed up
+     * @param cache the file holding the serialized hierarchy
+     * @return the hierarchy of the graph
+     */
+    public static ContractionHierarchy loadOrBuild(Graph graph, File cache) {
+        if (cache.isFile()) {
+            try {
+                ContractionHierarchy hierarchy = load(graph, cache);
+                if (hierarchy != null) {
+                    return hierarchy;
+                }
+            } catch (IOException e) {
+                System.err.printf("Ignoring unreadable contraction hierarchy %s: %s\n", cache, e.getMessage());
+            }
+        }
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = build(graph);
+        System.err.printf("Contracted %d intersections into %d upward arcs in %.2fs\n", graph.getNodeCount(),
+                hierarchy.getArcCount(), (System.nanoTime() - start) / 1e9);
+        try {
+            hierarchy.save(cache);
+        } catch (IOException e) {
+            System.err.printf("Could not save contraction hierarchy %s: %s\n", cache, e.getMessage());
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Contracts every node of a graph, lowest priority first, and builds the upward graph.
+     * The priority of a node is its edge difference (shortcuts it would add minus arcs it would remove) plus its
+     * number of contracted neighbours plus its depth in the hierarchy, with the shortcuts estimated from
+     * witnesses of at most two arcs instead of searched for. Each round contracts, in parallel, every
+     * node whose priority is lower than that of all its remaining neighbours. Witness searches of a round ignore
+     * all nodes of the round, so shortcuts needed because of two nodes contracted together are never missed.
+     * Whether a node is a local minimum only depends on the arcs and priorities within two hops of it, and a
+     * round only changes those of the neighbours of the nodes it contracts, so only the nodes within two hops of
+     * these are tested again in the next round; every other remaining node was not a local minimum before and
+     * still is not.
+     *
+     * @param graph the graph to contract
+     * @return the new hierarchy
+     */
+    public static ContractionHierarchy build(Graph graph) {
+        Contraction contraction = new Contraction(graph);
+        int nodeCount = graph.getNodeCount();
+        int[] remaining = IntStream.range(0, nodeCount).toArray();
+        int remainingCount = nodeCount;
+        int[] candidates = remaining.clone(); // nodes that may have become local minima in the last round
+        int[] marks = new int[nodeCount]; // stamp of the last neighbourhood each node was collected in
+        int stamp = 0;
+        IntStream.range(0, nodeCount).parallel().forEach(contraction::updatePriority);
+
+        int[] ranks = new int[nodeCount];
+        int nextRank = 0;
+        while (remainingCount > 0) {
+            int[] round = Arrays.stream(candidates).parallel().filter(contraction::isLocalMinimum).toArray();
+            for (int node : round) {
+                contraction.inRound[node] = true;
+            }
+            Shortcuts[] shortcuts = new Shortcuts[round.length];
+            IntStream.range(0, round.length).parallel()
+                    .forEach(i -> shortcuts[i] = contraction.findShortcuts(round[i]));
+            for (int i = 0; i < round.length; i++) {
+                ranks[round[i]] = nextRank++;
+                contraction.contract(round[i], shortcuts[i]);
+            }
+            int[] touched = contraction.neighbourhood(round, false, marks, ++stamp);
+            Arrays.stream(touched).parallel().forEach(contraction::updatePriority);
+            int[] near = contraction.neighbourhood(touched, true, marks, ++stamp);
+            candidates = contraction.neighbourhood(near, true, marks, ++stamp);
+            int kept = 0;
+            for (int i = 0; i < remainingCount; i++) {
+                if (!contraction.contracted[remaining[i]]) {
+                    remaining[kept++] = remaining[i];
+                }
+            }
+            remainingCount = kept;
+        }
+        return contraction.toHierarchy(ranks);
+    }
+
+    /**
+     * Returns a hierarchy for the current edge weights of the graph, repaired from this one after some edges
+     * changed weight. The node order is kept, so nothing is contracted again. The hierarchy is correct when
+     * every arc weighs as little as the arcs below it allow, and when for every node v and every two of its
+     * upward neighbours u and w the hierarchy has a path between u and w, above v, at most as long as the path
+     * through v. The repair restores both:
+     * <ul>
+     * <li>Arcs are reweighted from the lower triangles they close, lowest rank first, starting from the arcs
+     * of the changed edges and following only arcs whose weight actually changed.</li>
+     * <li>The pairs of a node are checked again when one of its arcs got shorter, or when one of its upward
+     * neighbours is close enough to a longer edge that the path that made a shortcut unnecessary may have used
+     * it. A pair whose path is now too long gets the missing shortcut, which is reweighted and checked in turn.</li>
+     * </ul>
+     * This hierarchy is left unchanged, so queries running on it finish on a consistent state. Call this after
+     * Graph.setEdgeWeights.
+     *
+     * @param edges      the indices of the edges whose weights changed
+     * @param oldWeights the weight of every edge before the change
+     * @return the repaired hierarchy
+     */
+    public ContractionHierarchy update(int[] edges, double[] oldWeights) {
+        long start = System.nanoTime();
+        Repair repair = new Repair(this);
+        double[] reach = repair.witnessReach();
+        double[] weights = this.graph.getEdgeWeights();
+        for (int edge : edges) {
+            int a = this.graph.getEdgeA(edge);
+            int b = this.graph.getEdgeB(edge);
+            if (a != b) {
+                repair.markDirty(this.ranks[a] < this.ranks[b] ? a : b);
+            }
+        }
+        repair.checkNear(Arrays.stream(edges).filter(edge -> weights[edge] > oldWeights[edge]).toArray(),
+                oldWeights, reach);
+        repair.run();
+        ContractionHierarchy updated = repair.toHierarchy();
+        System.err.printf("Repaired contraction hierarchy after %d changed roads: %d arcs reweighted, %d nodes "
+                        + "checked, %d shortcuts added in %.1fms\n", edges.length, repair.reweighted, repair.checked,
+                repair.added, (System.nanoTime() - start) / 1e6);
+        return updated;
+    }
+
+    /**
+     * Reads a hierarchy written by save.
+     *
+     * @param graph the graph the hierarchy must belong to
+     * @param file  the file to read
+     * @return the hierarchy, or null if the file was built from a different graph or an older format
+     * @throws IOException if the file cannot be read
+     */
+    public static ContractionHierarchy load(Graph graph, File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != graph.fingerprint()) {
+                return null;
+            }
+            int nodeCount = in.readInt();
+            int arcCount = in.readInt();
+            if (nodeCount != graph.getNodeCount()) {
+                return null;
+            }
+            int[] ranks = readInts(in, nodeCount);
+            int[] firstUp = readInts(in, nodeCount + 1);
+            int[] upTargets = readInts(in, arcCount);
+            double[] upWeights = new double[arcCount];
+            for (int i = 0; i < arcCount; i++) {
+                upWeights[i] = in.readDouble();
+            }
+            int[] upMiddles = readInts(in, arcCount);
+            int[] upEdges = readInts(in, arcCount);
+            return new ContractionHierarchy(graph, ranks, firstUp, upTargets, upWeights, upMiddles, upEdges);
+        }
+    }
+
+    /**
+     * Writes this hierarchy to a file, tagged with the fingerprint of its graph.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(this.graph.fingerprint());
+            out.writeInt(this.ranks.length);
+            out.writeInt(this.upTargets.length);
+            writeInts(out, this.ranks);
+            writeInts(out, this.firstUp);
+            writeInts(out, this.upTargets);
+            for (double weight : this.upWeights) {
+                out.writeDouble(weight);
+            }
+            writeInts(out, this.upMiddles);
+            writeInts(out, this.upEdges);
+        }
+    }
+
+    /**
+     * Private helper method that reads an array of ints.
+     */
+    private static int[] readInts(DataInputStream in, int length) throws IOException {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * Private helper method that writes an array of ints.
+     */
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Finds the node that owns an upward arc, that is the lower-ranked end of the arc.
+     *
+     * @param arc the index of the upward arc
+     * @return the index of the node whose upward arcs include arc
+     */
+    public int getUpSource(int arc) {
+        int position = Arrays.binarySearch(this.firstUp, arc);
+        if (position < 0) {
+            return -position - 2;
+        }
+        // several nodes may start at the same index when some have no upward arcs, the last of them owns it
+        while (position + 1 < this.firstUp.length && this.firstUp[position + 1] == arc) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Expands an upward arc into the original edges it stands for and appends them to a path, along with the
+     * nodes after the one the walk starts from.
+     *
+     * @param arc  the index of the upward arc
+     * @param from the end of the arc the walk starts from
+     * @param path the path receiving the edges and the nodes after from, up to and including the other end
+     */
+    public void unpack(int arc, int from, Path.Builder path) {
+        int source = this.getUpSource(arc);
+        int to = from == source ? this.upTargets[arc] : source;
+        int middle = this.upMiddles[arc];
+        if (middle == -1) {
+            path.append(this.upEdges[arc], to);
+            return;
+        }
+        this.unpack(this.findUpArc(middle, from), from, path);
+        this.unpack(this.findUpArc(middle, to), middle, path);
+    }
+
+    /**
+     * Private helper method that finds the upward arc from a node to a higher-ranked node.
+     */
+    private int findUpArc(int node, int target) {
+        for (int arc = this.firstUp[node]; arc < this.firstUp[node + 1]; arc++) {
+            if (this.upTargets[arc] == target) {
+                return arc;
+            }
+        }
+        throw new IllegalStateException("Missing arc below a shortcut, the hierarchy is corrupt");
+    }
+
+    /**
+     * Shortcuts found for one contracted node, stored as parallel arrays of pairs of neighbours.
+     */
+    private static class Shortcuts {
+        private int[] from = new int[4]; // first neighbour of each shortcut
+        private int[] to = new int[4]; // second neighbour of each shortcut
+        private double[] weights = new double[4]; // weight of each shortcut
+        private int size; // number of shortcuts
+
+        private void add(int a, int b, double weight) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, 2 * size);
+                to = Arrays.copyOf(to, 2 * size);
+                weights = Arrays.copyOf(weights, 2 * size);
+            }
+            from[size] = a;
+            to[size] = b;
+            weights[size] = weight;
+            size++;
+        }
+    }
+
+    /**
+     * The scratch space of one worker thread for witness searches and shortcut estimates.
+     */
+    private static class Witness {
+        private final QueryContext context; // state of the witness searches
+        private final int[] marks; // stamp of the last search or estimate that marked each node
+        private final double[] dists; // distance of each marked node from the neighbour an estimate started at
+        private int stamp; // stamp of the current search or estimate
+
+        private Witness(int nodeCount) {
+            this.context = new QueryContext(nodeCount, QueueType.HEAP);
+            this.marks = new int[nodeCount];
+            this.dists = new double[nodeCount];
+        }
+
+        /**
+         * Returns a stamp no node is marked with yet, clearing the marks once the stamps wrap around.
+         */
+        private int nextStamp() {
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                stamp = 0;
+            }
+            return ++stamp;
+        }
+    }
+
+    /**
+     * The graph being contracted: the arcs among the remaining nodes, the arcs each contracted node had when it
+     * was removed, and the bookkeeping of the node ordering.
+     */
+    private static class Contraction {
+        private final Graph graph; // the original graph
+        private final int[][] targets; // neighbours of each node among the remaining nodes, or when it was contracted
+        private final double[][] weights; // weight of the arc to each neighbour
+        private final int[][] middles; // node skipped by the arc to each neighbour, -1 for original edges
+        private final int[][] edges; // original edge of the arc to each neighbour, -1 for shortcuts
+        private final int[] degrees; // number of neighbours of each node
+        private final int[] priorities; // contraction priority of each remaining node
+        private final int[] contractedNeighbours; // number of neighbours of each node that were contracted already
+        private final int[] levels; // depth of each node in the hierarchy built so far
+        private final boolean[] contracted; // whether each node was contracted
+        private final boolean[] inRound; // whether each node is contracted in the current round
+        private final ThreadLocal<Witness> witnesses; // witness search state of each worker thread
+
+        private Contraction(Graph graph) {
+            this.graph = graph;
+            int nodeCount = graph.getNodeCount();
+            this.targets = new int[nodeCount][];
+            this.weights = new double[nodeCount][];
+            this.middles = new int[nodeCount][];
+            this.edges = new int[nodeCount][];
+            this.degrees = new int[nodeCount];
+            this.priorities = new int[nodeCount];
+            this.contractedNeighbours = new int[nodeCount];
+            this.levels = new int[nodeCount];
+            this.contracted = new boolean[nodeCount];
+            this.inRound = new boolean[nodeCount];
+            this.witnesses = ThreadLocal.withInitial(() -> new Witness(nodeCount));
+            for (int node = 0; node < nodeCount; node++) {
+                int degree = graph.getFirstArc(node + 1) - graph.getFirstArc(node);
+                this.targets[node] = new int[Math.max(degree, 1)];
+                this.weights[node] = new double[Math.max(degree, 1)];
+                this.middles[node] = new int[Math.max(degree, 1)];
+                this.edges[node] = new int[Math.max(degree, 1)];
+            }
+            double[] arcWeights = graph.getArcWeights();
+            for (int node = 0; node < nodeCount; node++) {
+                for (int arc = graph.getFirstArc(node); arc < graph.getFirstArc(node + 1); arc++) {
+                    int target = graph.getArcTarget(arc);
+                    if (target != node) {
+                        this.addArc(node, target, arcWeights[arc], -1, graph.getArcEdge(arc));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds an arc from node to target, or lowers the weight of the existing one. Parallel arcs are merged.
+         */
+        private void addArc(int node, int target, double weight, int middle, int edge) {
+            for (int i = 0; i < degrees[node]; i++) {
+                if (targets[node][i] == target) {
+                    if (weight < weights[node][i]) {
+                        weights[node][i] = weight;
+                        middles[node][i] = middle;
+                        edges[node][i] = edge;
+                    }
+                    return;
+                }
+            }
+            int i = degrees[node]++;
+            if (i == targets[node].length) {
+                targets[node] = Arrays.copyOf(targets[node], 2 * i);
+                weights[node] = Arrays.copyOf(weights[node], 2 * i);
+                middles[node] = Arrays.copyOf(middles[node], 2 * i);
+                edges[node] = Arrays.copyOf(edges[node], 2 * i);
+            }
+            targets[node][i] = target;
+            weights[node][i] = weight;
+            middles[node][i] = middle;
+            edges[node][i] = edge;
+        }
+
+        /**
+         * Removes the arc from node to target by moving the last arc of node into its place.
+         */
+        private void removeArc(int node, int target) {
+            for (int i = 0; i < degrees[node]; i++) {
+                if (targets[node][i] == target) {
+                    int last = --degrees[node];
+                    targets[node][i] = targets[node][last];
+                    weights[node][i] = weights[node][last];
+                    middles[node][i] = middles[node][last];
+                    edges[node][i] = edges[node][last];
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns the remaining neighbours of a node.
+         */
+        private IntStream neighbours(int node) {
+            return Arrays.stream(targets[node], 0, degrees[node]);
+        }
+
+        /**
+         * Returns the given nodes, if asked to, and their remaining neighbours, each once. The nodes returned
+         * are marked with the stamp, which must differ from every stamp used before.
+         */
+        private int[] neighbourhood(int[] nodes, boolean withNodes, int[] marks, int stamp) {
+            int[] collected = new int[Math.max(16, nodes.length)];
+            int size = 0;
+            if (withNodes) {
+                for (int node : nodes) {
+                    if (marks[node] != stamp) {
+                        marks[node] = stamp;
+                        collected[size++] = node;
+                    }
+                }
+            }
+            for (int node : nodes) {
+                for (int i = 0; i < degrees[node]; i++) {
+                    int neighbour = targets[node][i];
+                    if (marks[neighbour] != stamp) {
+                        if (size == collected.length) {
+                            collected = Arrays.copyOf(collected, 2 * size);
+                        }
+                        marks[neighbour] = stamp;
+                        collected[size++] = neighbour;
+                    }
+                }
+            }
+            return Arrays.copyOf(collected, size);
+        }
+
+        /**
+         * Returns whether a remaining node has a lower priority than all its remaining neighbours,
+         * ties broken by index. Two such nodes are never neighbours, so they can be contracted together.
+         */
+        private boolean isLocalMinimum(int node) {
+            for (int i = 0; i < degrees[node]; i++) {
+                int other = targets[node][i];
+                if (this.precedes(other, node)) {
+                    return false;
+                }
+                for (int j = 0; j < degrees[other]; j++) {
+                    int second = targets[other][j];
+                    if (second != node && this.precedes(second, node)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private boolean precedes(int a, int b) {
+            return priorities[a] < priorities[b] || (priorities[a] == priorities[b] && a < b);
+        }
+
+        /**
+         * Recomputes the priority of a remaining node by simulating its contraction.
+         */
+        private void updatePriority(int node) {
+            int shortcuts = this.estimateShortcuts(node, witnesses.get());
+            priorities[node] = shortcuts - degrees[node] + contractedNeighbours[node] + levels[node];
+        }
+
+        /**
+         * Estimates the number of shortcuts needed to contract a node without searching: a pair of its
+         * neighbours is taken to need no shortcut if an arc, or two arcs through a third node other than the
+         * node itself, join them at most as long as the path through the node. Longer witnesses are missed, so
+         * the estimate may count too many shortcuts, which only makes the node look costlier; contracting the
+         * node still runs full witness searches. The arcs of each neighbour are marked once and then read for
+         * all the pairs it is part of.
+         */
+        private int estimateShortcuts(int node, Witness witness) {
+            int count = 0;
+            int degree = degrees[node];
+            for (int i = 0; i < degree - 1; i++) {
+                int from = targets[node][i];
+                int stamp = witness.nextStamp();
+                for (int k = 0; k < degrees[from]; k++) {
+                    int other = targets[from][k];
+                    if (other != node) {
+                        witness.marks[other] = stamp;
+                        witness.dists[other] = weights[from][k];
+                    }
+                }
+                for (int j = i + 1; j < degree; j++) {
+                    int to = targets[node][j];
+                    double through = weights[node][i] + weights[node][j];
+                    boolean witnessed = witness.marks[to] == stamp && witness.dists[to] <= through;
+                    for (int k = 0; k < degrees[to] && !witnessed; k++) {
+                        int middle = targets[to][k];
+                        witnessed = middle != node && witness.marks[middle] == stamp
+                                && witness.dists[middle] + weights[to][k] <= through;
+                    }
+                    if (!witnessed) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Finds the shortcuts needed to contract a node: for every pair of its neighbours, a shortcut is needed
+         * unless a witness search finds a path between them, avoiding the node, that is at most as long as the
+         * path through it. One search from each neighbour covers all pairs it is part of. Searches that give up
+         * at the settle limit only ever cause extra shortcuts, never missing ones.
+         */
+        private Shortcuts findShortcuts(int node) {
+            Shortcuts shortcuts = new Shortcuts();
+            Witness witness = witnesses.get();
+            QueryContext context = witness.context;
+            int degree = degrees[node];
+            for (int i = 0; i < degree - 1; i++) {
+                int from = targets[node][i];
+                double limit = 0;
+                int stamp = witness.nextStamp();
+                for (int j = i + 1; j < degree; j++) {
+                    limit = Math.max(limit, weights[node][i] + weights[node][j]);
+                    witness.marks[targets[node][j]] = stamp;
+                }
+                this.witnessSearch(from, node, degree - i - 1, limit, witness, stamp);
+                for (int j = i + 1; j < degree; j++) {
+                    double through = weights[node][i] + weights[node][j];
+                    if (context.getDist(targets[node][j]) > through) {
+                        shortcuts.add(from, targets[node][j], through);
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Runs Dijkstra's algorithm among the remaining nodes from a neighbour of the node being contracted,
+         * skipping that node and every node of the current round, until the targets, the nodes marked with the
+         * stamp, are settled, the limit distance is passed or WITNESS_SETTLE_LIMIT nodes are settled. Nodes
+         * beyond the limit are never queued, since they could neither be settled nor be a witness.
+         */
+        private void witnessSearch(int source, int skipped, int targetCount, double limit, Witness witness,
+                                   int stamp) {
+            QueryContext context = witness.context;
+            context.begin();
+            NodeQueue queue = context.getQueue();
+            context.update(source, 0, -1);
+            queue.push(source, 0);
+            int targetsLeft = targetCount;
+            while (!queue.isEmpty() && queue.peekKey() <= limit
+                    && context.getSettledCount() < WITNESS_SETTLE_LIMIT) {
+                int current = queue.poll();
+                context.settle(current);
+                if (witness.marks[current] == stamp && --targetsLeft == 0) {
+                    return;
+                }
+                double currentDist = context.getDist(current);
+                for (int i = 0; i < degrees[current]; i++) {
+                    int next = targets[current][i];
+                    if (next == skipped || inRound[next] || context.isSettled(next)) {
+                        continue;
+                    }
+                    double newDist = currentDist + weights[current][i];
+                    if (newDist <= limit && newDist < context.getDist(next)) {
+                        context.update(next, newDist, -1);
+                        queue.push(next, newDist);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Removes a node from the remaining graph and adds its shortcuts. The node keeps its arcs, which all lead
+         * to nodes that will be contracted later and so become its upward arcs.
+         */
+        private void contract(int node, Shortcuts shortcuts) {
+            for (int i = 0; i < degrees[node]; i++) {
+                int neighbour = targets[node][i];
+                this.removeArc(neighbour, node);
+                contractedNeighbours[neighbour]++;
+                levels[neighbour] = Math.max(levels[neighbour], levels[node] + 1);
+            }
+            for (int i = 0; i < shortcuts.size; i++) {
+                this.addArc(shortcuts.from[i], shortcuts.to[i], shortcuts.weights[i], node, -1);
+                this.addArc(shortcuts.to[i], shortcuts.from[i], shortcuts.weights[i], node, -1);
+            }
+            contracted[node] = true;
+            inRound[node] = false;
+        }
+
+        /**
+         * Packs the arcs each node had when it was contracted into the upward graph.
+         */
+        private ContractionHierarchy toHierarchy(int[] ranks) {
+            int nodeCount = graph.getNodeCount();
+            int[] firstUp = new int[nodeCount + 1];
+            for (int node = 0; node < nodeCount; node++) {
+                firstUp[node + 1] = firstUp[node] + degrees[node];
+            }
+            int arcCount = firstUp[nodeCount];
+            int[] upTargets = new int[arcCount];
+            double[] upWeights = new double[arcCount];
+            int[] upMiddles = new int[arcCount];
+            int[] upEdges = new int[arcCount];
+            for (int node = 0; node < nodeCount; node++) {
+                System.arraycopy(targets[node], 0, upTargets, firstUp[node], degrees[node]);
+                System.arraycopy(weights[node], 0, upWeights, firstUp[node], degrees[node]);
+                System.arraycopy(middles[node], 0, upMiddles, firstUp[node], degrees[node]);
+                System.arraycopy(edges[node], 0, upEdges, firstUp[node], degrees[node]);
+            }
+            return new ContractionHierarchy(graph, ranks, firstUp, upTargets, upWeights, upMiddles, upEdges);
+        }
+    }
+
+    /**
+     * The upward graph of a hierarchy being repaired, as growable per-node arcs, with the lower end of every
+     * arc indexed by its upper end so the triangles below an arc can be found.
+     */
+    private static class Repair {
+        private final Graph graph; // the graph with its new weights
+        private final int[] ranks; // the node order, which the repair keeps
+        private final int[][] targets; // upward neighbours of each node
+        private final double[][] weights; // weight of the arc to each upward neighbour
+        private final int[][] middles; // node skipped by the arc to each upward neighbour, -1 for original edges
+        private final int[][] edges; // original edge of the arc to each upward neighbour, -1 for shortcuts
+        private final int[] degrees; // number of upward neighbours of each node
+        private final int[][] downs; // lower-ranked nodes with an arc to each node
+        private final int[] downDegrees; // number of lower-ranked nodes with an arc to each node
+        private final PriorityQueue<Integer> dirty; // nodes whose arcs must be reweighted, lowest rank first
+        private final boolean[] isDirty; // whether each node is in dirty
+        private final ArrayDeque<Integer> checks; // nodes whose pairs of upward neighbours must be checked
+        private final boolean[] isChecked; // whether each node is in checks
+        private final int[] positions; // position of each node among the arcs being reweighted, -1 if none
+        private final double[] scratch; // distances of one upward search while pairs are checked
+        private final QueryContext context; // state of the searches of the repair
+        private long reweighted; // number of arcs whose weight changed
+        private long checked; // number of nodes whose pairs were checked
+        private long added; // number of shortcuts added
+
+        private Repair(ContractionHierarchy hierarchy) {
+            this.graph = hierarchy.graph;
+            this.ranks = hierarchy.ranks;
+            int nodeCount = this.graph.getNodeCount();
+            this.targets = new int[nodeCount][];
+            this.weights = new double[nodeCount][];
+            this.middles = new int[nodeCount][];
+            this.edges = new int[nodeCount][];
+            this.degrees = new int[nodeCount];
+            this.downs = new int[nodeCount][];
+            this.downDegrees = new int[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                int first = hierarchy.firstUp[node];
+                int last = hierarchy.firstUp[node + 1];
+                this.degrees[node] = last - first;
+                this.targets[node] = Arrays.copyOfRange(hierarchy.upTargets, first, Math.max(last, first + 1));
+                this.weights[node] = Arrays.copyOfRange(hierarchy.upWeights, first, Math.max(last, first + 1));
+                this.middles[node] = Arrays.copyOfRange(hierarchy.upMiddles, first, Math.max(last, first + 1));
+                this.edges[node] = Arrays.copyOfRange(hierarchy.upEdges, first, Math.max(last, first + 1));
+                for (int arc = first; arc < last; arc++) {
+                    this.downDegrees[hierarchy.upTargets[arc]]++;
+                }
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                this.downs[node] = new int[Math.max(this.downDegrees[node], 1)];
+                this.downDegrees[node] = 0;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                for (int i = 0; i < this.degrees[node]; i++) {
+                    int upper = this.targets[node][i];
+                    this.downs[upper][this.downDegrees[upper]++] = node;
+                }
+            }
+            this.dirty = new PriorityQueue<>((a, b) -> Integer.compare(this.ranks[a], this.ranks[b]));
+            this.isDirty = new boolean[nodeCount];
+            this.checks = new ArrayDeque<>();
+            this.isChecked = new boolean[nodeCount];
+            this.positions = new int[nodeCount];
+            Arrays.fill(this.positions, -1);
+            this.scratch = new double[nodeCount];
+            Arrays.fill(this.scratch, Double.POSITIVE_INFINITY);
+            this.context = new QueryContext(nodeCount, QueueType.HEAP);
+        }
+
+        private void markDirty(int node) {
+            if (!isDirty[node]) {
+                isDirty[node] = true;
+                dirty.add(node);
+            }
+        }
+
+        private void markChecked(int node) {
+            if (!isChecked[node]) {
+                isChecked[node] = true;
+                checks.add(node);
+            }
+        }
+
+        /**
+         * Returns, for every node, the longest path through it between two of its upward neighbours, which
+         * bounds how far from those neighbours the paths that made its shortcuts unnecessary can go.
+         */
+        private double[] witnessReach() {
+            double[] reach = new double[degrees.length];
+            for (int node = 0; node < degrees.length; node++) {
+                double first = Double.NEGATIVE_INFINITY;
+                double second = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < degrees[node]; i++) {
+                    double weight = weights[node][i];
+                    if (weight > first && weight != Double.POSITIVE_INFINITY) {
+                        second = first;
+                        first = weight;
+                    } else if (weight > second && weight != Double.POSITIVE_INFINITY) {
+                        second = weight;
+                    }
+                }
+                reach[node] = first + second;
+            }
+            return reach;
+        }
+
+        /**
+         * Queues for checking every node with an upward neighbour within its reach of a longer edge, found with
+         * one Dijkstra run over the old weights from the ends of all longer edges.
+         */
+        private void checkNear(int[] longer, double[] oldWeights, double[] reach) {
+            if (longer.length == 0) {
+                return;
+            }
+            double limit = Arrays.stream(reach).max().orElse(0);
+            context.begin();
+            NodeQueue queue = context.getQueue();
+            for (int edge : longer) {
+                for (int end : new int[]{graph.getEdgeA(edge), graph.getEdgeB(edge)}) {
+                    context.update(end, 0, -1);
+                    queue.push(end, 0);
+                }
+            }
+            while (!queue.isEmpty() && queue.peekKey() <= limit) {
+                int current = queue.poll();
+                context.settle(current);
+                double currentDist = context.getDist(current);
+                for (int i = 0; i < downDegrees[current]; i++) {
+                    if (currentDist <= reach[downs[current][i]]) {
+                        this.markChecked(downs[current][i]);
+                    }
+                }
+                for (int arc = graph.getFirstArc(current); arc < graph.getFirstArc(current + 1); arc++) {
+                    int next = graph.getArcTarget(arc);
+                    double newDist = currentDist + oldWeights[graph.getArcEdge(arc)];
+                    if (!context.isSettled(next) && newDist < context.getDist(next)) {
+                        context.update(next, newDist, -1);
+                        queue.push(next, newDist);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reweights arcs and checks nodes until neither has work left. Arcs are always brought up to date
+         * before a node is checked, because checks compare against arc weights.
+         */
+        private void run() {
+            while (!dirty.isEmpty() || !checks.isEmpty()) {
+                while (!dirty.isEmpty()) {
+                    int node = dirty.poll();
+                    isDirty[node] = false;
+                    this.reweigh(node);
+                }
+                if (!checks.isEmpty()) {
+                    int node = checks.poll();
+                    isChecked[node] = false;
+                    this.check(node);
+                }
+            }
+        }
+
+        /**
+         * Sets every upward arc of a node to the lightest of the original edges it stands for and the lower
+         * triangles it closes, and marks the arcs that close triangles with a changed arc. Ties keep the
+         * original edge, so unpacking stops as early as it can.
+         */
+        private void reweigh(int node) {
+            int degree = degrees[node];
+            double[] best = new double[degree];
+            int[] bestMiddles = new int[degree];
+            int[] bestEdges = new int[degree];
+            Arrays.fill(best, Double.POSITIVE_INFINITY);
+            Arrays.fill(bestMiddles, -1);
+            Arrays.fill(bestEdges, -1);
+            for (int i = 0; i < degree; i++) {
+                positions[targets[node][i]] = i;
+            }
+            double[] arcWeights = graph.getArcWeights();
+            for (int arc = graph.getFirstArc(node); arc < graph.getFirstArc(node + 1); arc++) {
+                int i = positions[graph.getArcTarget(arc)];
+                if (i != -1 && arcWeights[arc] < best[i]) {
+                    best[i] = arcWeights[arc];
+                    bestEdges[i] = graph.getArcEdge(arc);
+                }
+            }
+            for (int k = 0; k < downDegrees[node]; k++) {
+                int lower = downs[node][k];
+                double toNode = weights[lower][this.find(lower, node)];
+                for (int j = 0; j < degrees[lower]; j++) {
+                    int i = positions[targets[lower][j]];
+                    if (i != -1 && toNode + weights[lower][j] < best[i]) {
+                        best[i] = toNode + weights[lower][j];
+                        bestMiddles[i] = lower;
+                        bestEdges[i] = -1;
+                    }
+                }
+            }
+            for (int i = 0; i < degree; i++) {
+                positions[targets[node][i]] = -1;
+            }
+            for (int i = 0; i < degree; i++) {
+                double old = weights[node][i];
+                weights[node][i] = best[i];
+                middles[node][i] = bestMiddles[i];
+                edges[node][i] = bestEdges[i];
+                if (best[i] != old) {
+                    reweighted++;
+                    this.markAbove(node, i);
+                    if (best[i] < old) {
+                        this.markChecked(node);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Marks for reweighting the arcs that close a triangle with the given upward arc of a node.
+         */
+        private void markAbove(int node, int changed) {
+            int upper = targets[node][changed];
+            for (int j = 0; j < degrees[node]; j++) {
+                int other = targets[node][j];
+                if (j == changed) {
+                    continue;
+                }
+                int low = ranks[upper] < ranks[other] ? upper : other;
+                int high = low == upper ? other : upper;
+                if (this.find(low, high) != -1) {
+                    this.markDirty(low);
+                }
+            }
+        }
+
+        /**
+         * Checks every pair of upward neighbours of a node that has no arc of its own: if the shortest path
+         * between them above the node, found by meeting their upward searches, is longer than the path through
+         * the node, a shortcut is added. One search from each neighbour serves all its pairs.
+         */
+        private void check(int node) {
+            int degree = degrees[node];
+            if (degree < 2) {
+                return;
+            }
+            checked++;
+            int[][] reached = new int[degree][];
+            double[][] reachedDists = new double[degree][];
+            for (int i = 0; i < degree; i++) {
+                double limit = -1;
+                for (int j = 0; j < degree; j++) {
+                    if (j != i && weights[node][i] + weights[node][j] != Double.POSITIVE_INFINITY) {
+                        limit = Math.max(limit, weights[node][i] + weights[node][j]);
+                    }
+                }
+                reached[i] = limit < 0 ? new int[0] : this.upwardSearch(targets[node][i], limit);
+                reachedDists[i] = new double[reached[i].length];
+                for (int k = 0; k < reached[i].length; k++) {
+                    reachedDists[i][k] = context.getDist(reached[i][k]);
+                }
+            }
+            for (int i = 0; i < degree - 1; i++) {
+                for (int k = 0; k < reached[i].length; k++) {
+                    scratch[reached[i][k]] = reachedDists[i][k];
+                }
+                for (int j = i + 1; j < degree; j++) {
+                    int a = targets[node][i];
+                    int b = targets[node][j];
+                    double through = weights[node][i] + weights[node][j];
+                    int low = ranks[a] < ranks[b] ? a : b;
+                    if (through == Double.POSITIVE_INFINITY || this.find(low, low == a ? b : a) != -1) {
+                        continue;
+                    }
+                    double best = Double.POSITIVE_INFINITY;
+                    for (int k = 0; k < reached[j].length; k++) {
+                        best = Math.min(best, scratch[reached[j][k]] + reachedDists[j][k]);
+                    }
+                    if (best > through) {
+                        this.addShortcut(low, low == a ? b : a, through, node);
+                    }
+                }
+                for (int k = 0; k < reached[i].length; k++) {
+                    scratch[reached[i][k]] = Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+
+        /**
+         * Runs Dijkstra's algorithm over the upward arcs from a node until the limit distance is passed.
+         *
+         * @return the settled nodes, their distances are left in the context
+         */
+        private int[] upwardSearch(int source, double limit) {
+            int[] settled = new int[16];
+            context.begin();
+            NodeQueue queue = context.getQueue();
+            context.update(source, 0, -1);
+            queue.push(source, 0);
+            while (!queue.isEmpty() && queue.peekKey() <= limit) {
+                int current = queue.poll();
+                if (context.getSettledCount() == settled.length) {
+                    settled = Arrays.copyOf(settled, 2 * settled.length);
+                }
+                settled[context.getSettledCount()] = current;
+                context.settle(current);
+                double currentDist = context.getDist(current);
+                for (int i = 0; i < degrees[current]; i++) {
+                    int next = targets[current][i];
+                    double newDist = currentDist + weights[current][i];
+                    if (newDist <= limit && newDist < context.getDist(next)) {
+                        context.update(next, newDist, -1);
+                        queue.push(next, newDist);
+                    }
+                }
+            }
+            return Arrays.copyOf(settled, context.getSettledCount());
+        }
+
+        /**
+         * Adds the shortcut from a node to a higher-ranked node through a lower one, then reweighs it with the
+         * rest of the node's arcs and checks the new pairs it forms.
+         */
+        private void addShortcut(int node, int upper, double weight, int middle) {
+            added++;
+            int i = degrees[node]++;
+            if (i == targets[node].length) {
+                targets[node] = Arrays.copyOf(targets[node], 2 * i);
+                weights[node] = Arrays.copyOf(weights[node], 2 * i);
+                middles[node] = Arrays.copyOf(middles[node], 2 * i);
+                edges[node] = Arrays.copyOf(edges[node], 2 * i);
+            }
+            targets[node][i] = upper;
+            weights[node][i] = weight;
+            middles[node][i] = middle;
+            edges[node][i] = -1;
+            if (downDegrees[upper] == downs[upper].length) {
+                downs[upper] = Arrays.copyOf(downs[upper], 2 * downDegrees[upper]);
+            }
+            downs[upper][downDegrees[upper]++] = node;
+            this.markAbove(node, i);
+            this.markDirty(node);
+            this.markChecked(node);
+        }
+
+        /**
+         * Returns the position of the arc from a node to a higher-ranked node, -1 if there is none.
+         */
+        private int find(int node, int upper) {
+            for (int i = 0; i < degrees[node]; i++) {
+                if (targets[node][i] == upper) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Packs the repaired arcs into a new hierarchy.
+         */
+        private ContractionHierarchy toHierarchy() {
+            int nodeCount = degrees.length;
+            int[] firstUp = new int[nodeCount + 1];
+            for (int node = 0; node < nodeCount; node++) {
+                firstUp[node + 1] = firstUp[node] + degrees[node];
+            }
+            int arcCount = firstUp[nodeCount];
+            int[] upTargets = new int[arcCount];
+            double[] upWeights = new double[arcCount];
+            int[] upMiddles = new int[arcCount];
+            int[] upEdges = new int[arcCount];
+            for (int node = 0; node < nodeCount; node++) {
+                System.arraycopy(targets[node], 0, upTargets, firstUp[node], degrees[node]);
+                System.arraycopy(weights[node], 0, upWeights, firstUp[node], degrees[node]);
+                System.arraycopy(middles[node], 0, upMiddles, firstUp[node], degrees[node]);
+                System.arraycopy(edges[node], 0, upEdges, firstUp[node], degrees[node]);
+            }
+            return new ContractionHierarchy(graph, ranks, firstUp, upTargets, upWeights, upMiddles, upEdges);
+        }
+    }
+}
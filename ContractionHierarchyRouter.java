@@ -0,0 +1,148 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class ContractionHierarchyRouter implements Router {
+    private final ContractionHierarchy hierarchy; // the preprocessed upward graph
+
+    /**
+     * Creates a router that answers queries with a contraction hierarchy.
+     *
+     * @param hierarchy the hierarchy of the graph being searched
+     */
+    public ContractionHierarchyRouter(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm upward from the source and upward from the target, only following arcs to
+     * higher-ranked nodes. Every shortest path has a highest node that both searches reach, so the best node
+     * settled by both is the meeting point. Each side stops once its smallest queued distance reaches the best
+     * path found, then the shortcuts on the path are unpacked into the original roads.
+     */
+    @Override
+    public Path route(Node source, Node target, QueryContextPool pool) {
+        if (source == null || target == null) {
+            throw new NullPointerException("Cannot find shortest path, source or target is null");
+        }
+        return this.route(new Node[]{source}, new double[1], new Node[]{target}, new double[1], pool);
+    }
+
+    /**
+     * Finds the shortest path from any of some sources to any of some targets with one query, the upward
+     * searches starting from all the sources and all the targets at once. Each source and target starts at a
+     * distance of its own, such as the part of a road driven before reaching it, and the path found is the one
+     * that is shortest with those distances added.
+     *
+     * @param sources     the source nodes
+     * @param sourceDists the distance each source starts at
+     * @param targets     the target nodes
+     * @param targetDists the distance each target starts at
+     * @param pool        the pool that lends the query contexts
+     * @return the path from the chosen source to the chosen target, its distance not counting the starting
+     * distances, or a path without nodes from the first source to the first target if there is none
+     */
+    public Path route(Node[] sources, double[] sourceDists, Node[] targets, double[] targetDists,
+                      QueryContextPool pool) {
+        double[] weights = this.hierarchy.getUpWeights();
+        QueryContext forward = pool.acquire();
+        QueryContext backward = pool.acquire();
+        try {
+            seed(forward, sources, sourceDists);
+            seed(backward, targets, targetDists);
+            double best = Double.POSITIVE_INFINITY;
+            int meeting = -1;
+
+            while (true) {
+                double forwardKey = forward.getQueue().peekKey();
+                double backwardKey = backward.getQueue().peekKey();
+                if (forwardKey >= best && backwardKey >= best) {
+                    break;
+                }
+                QueryContext side = forwardKey <= backwardKey ? forward : backward;
+                QueryContext other = side == forward ? backward : forward;
+                NodeQueue queue = side.getQueue();
+
+                int current = queue.poll();
+                side.settle(current);
+                double currentDist = side.getDist(current);
+                if (currentDist + other.getDist(current) < best) {
+                    best = currentDist + other.getDist(current);
+                    meeting = current;
+                }
+                for (int arc = this.hierarchy.getFirstUp(current); arc < this.hierarchy.getFirstUp(current + 1); arc++) {
+                    int next = this.hierarchy.getUpTarget(arc);
+                    double newDist = currentDist + weights[arc];
+                    if (newDist < side.getDist(next)) {
+                        side.update(next, newDist, arc);
+                        queue.push(next, newDist);
+                    }
+                }
+            }
+            if (meeting == -1) {
+                return Path.none(sources[0], targets[0]);
+            }
+            Graph graph = this.hierarchy.getGraph();
+            Node source = graph.getNode(this.root(forward, meeting));
+            Node target = graph.getNode(this.root(backward, meeting));
+            double distance = (forward.getDist(meeting) - forward.getDist(source.getIndex()))
+                    + (backward.getDist(meeting) - backward.getDist(target.getIndex()));
+            return this.unpack(source, forward, meeting, backward).build(source, target, distance);
+        } finally {
+            pool.release(forward);
+            pool.release(backward);
+        }
+    }
+
+    /**
+     * Private helper method that queues the nodes a search starts from, each at its starting distance.
+     */
+    private static void seed(QueryContext context, Node[] nodes, double[] dists) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (dists[i] < context.getDist(nodes[i].getIndex())) {
+                context.update(nodes[i].getIndex(), dists[i], -1);
+                context.getQueue().push(nodes[i].getIndex(), dists[i]);
+            }
+        }
+    }
+
+    /**
+     * Private helper method that follows the upward arcs of a search tree back from a node to the node the
+     * search started from.
+     */
+    private int root(QueryContext context, int node) {
+        for (int arc = context.getPrevEdge(node); arc != -1; arc = context.getPrevEdge(node)) {
+            node = this.hierarchy.getUpSource(arc);
+        }
+        return node;
+    }
+
+    /**
+     * Private helper method that turns the two upward search trees joined at the meeting node into the original
+     * nodes and edges from the source to the target. The forward arcs are counted first so they can be replayed
+     * from the source without a stack of boxed arcs.
+     */
+    private Path.Builder unpack(Node source, QueryContext forward, int meeting, QueryContext backward) {
+        int count = 0;
+        for (int node = meeting, arc = forward.getPrevEdge(node); arc != -1; arc = forward.getPrevEdge(node)) {
+            node = this.hierarchy.getUpSource(arc);
+            count++;
+        }
+        int[] upArcs = new int[count];
+        for (int node = meeting, arc = forward.getPrevEdge(node); arc != -1; arc = forward.getPrevEdge(node)) {
+            upArcs[--count] = arc;
+            node = this.hierarchy.getUpSource(arc);
+        }
+        Path.Builder path = new Path.Builder(source.getIndex());
+        int node = source.getIndex();
+        for (int arc : upArcs) {
+            this.hierarchy.unpack(arc, node, path);
+            node = this.hierarchy.getUpTarget(arc);
+        }
+        for (int arc = backward.getPrevEdge(node); arc != -1; arc = backward.getPrevEdge(node)) {
+            this.hierarchy.unpack(arc, node, path);
+            node = this.hierarchy.getUpSource(arc);
+        }
+        return path;
+    }
+}
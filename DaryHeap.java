@@ -0,0 +1,121 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.Arrays;
+
+public class DaryHeap implements NodeQueue {
+    private static final int ARITY = 4; // number of children of each heap entry
+    private final int[] heap; // queued nodes in heap order
+    private final double[] keys; // key of the node at each heap position
+    private final int[] positions; // heap position of each node, -1 if the node is not queued
+    private int size; // number of queued nodes
+
+    /**
+     * Creates an empty indexed 4-ary heap able to hold every node of a graph.
+     * A 4-ary heap is shallower than a binary heap and keeps the children of an entry in one cache line.
+     *
+     * @param nodeCount the number of nodes in the graph
+     */
+    public DaryHeap(int nodeCount) {
+        this.heap = new int[nodeCount];
+        this.keys = new double[nodeCount];
+        this.positions = new int[nodeCount];
+        Arrays.fill(this.positions, -1);
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void push(int node, double key) {
+        int position = positions[node];
+        if (position == -1) {
+            position = size++;
+        } else if (key >= keys[position]) {
+            return;
+        }
+        this.siftUp(position, node, key);
+    }
+
+    @Override
+    public int poll() {
+        int min = heap[0];
+        positions[min] = -1;
+        size--;
+        if (size > 0) {
+            this.siftDown(heap[size], keys[size]);
+        }
+        return min;
+    }
+
+    @Override
+    public double peekKey() {
+        return size == 0 ? Double.POSITIVE_INFINITY : keys[0];
+    }
+
+    @Override
+    public boolean contains(int node) {
+        return positions[node] != -1;
+    }
+
+    /**
+     * Private helper method that moves a node up from the given position until its parent's key is not larger.
+     */
+    private void siftUp(int position, int node, double key) {
+        while (position > 0) {
+            int parent = (position - 1) / ARITY;
+            if (keys[parent] <= key) {
+                break;
+            }
+            this.place(position, heap[parent], keys[parent]);
+            position = parent;
+        }
+        this.place(position, node, key);
+    }
+
+    /**
+     * Private helper method that moves a node down from the root until no child has a smaller key.
+     */
+    private void siftDown(int node, double key) {
+        int position = 0;
+        while (true) {
+            int first = position * ARITY + 1;
+            if (first >= size) {
+                break;
+            }
+            int best = first;
+            int last = Math.min(first + ARITY, size);
+            for (int child = first + 1; child < last; child++) {
+                if (keys[child] < keys[best]) {
+                    best = child;
+                }
+            }
+            if (keys[best] >= key) {
+                break;
+            }
+            this.place(position, heap[best], keys[best]);
+            position = best;
+        }
+        this.place(position, node, key);
+    }
+
+    /**
+     * Private helper method that stores a node and its key at a heap position.
+     */
+    private void place(int position, int node, double key) {
+        heap[position] = node;
+        keys[position] = key;
+        positions[node] = position;
+    }
+}
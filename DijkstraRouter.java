@@ -0,0 +1,23 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class DijkstraRouter implements Router {
+    /**
+     * Runs Dijkstra's algorithm from the source and stops as soon as the target is settled,
+     * instead of settling the whole graph.
+     */
+    @Override
+    public Path route(Node source, Node target, QueryContextPool pool) {
+        if (target == null) {
+            throw new NullPointerException("Cannot find shortest path, target is null");
+        }
+        QueryContext context = pool.acquire();
+        try {
+            Graph.dijkstra(source, target, context);
+            return Graph.shortestPath(source, target, context);
+        } finally {
+            pool.release(context);
+        }
+    }
+}
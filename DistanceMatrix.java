@@ -0,0 +1,188 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class DistanceMatrix {
+    /**
+     * Computes the shortest path distance from every source to every target with one Dijkstra run per source.
+     * Each run stops as soon as every target in the source's connected component is settled, so sources close
+     * to all targets only explore the area around them, and targets that cannot be reached never make a run
+     * exhaust the component. Rows are computed in parallel, each with its own pooled context. No paths are built.
+     *
+     * @param pool       the query contexts the searches use, which also give the graph
+     * @param components the connected components of the graph
+     * @param sources    the indices of the source nodes
+     * @param targets    the indices of the target nodes
+     * @return the distances in miles in row-major order, entry [i * targets.length + j] going from sources[i] to
+     * targets[j], Double.POSITIVE_INFINITY where there is no path
+     * @throws IllegalArgumentException if the matrix has more entries than an array can hold
+     */
+    public static double[] compute(QueryContextPool pool, ConnectedComponents components, int[] sources,
+                                   int[] targets) {
+        Graph graph = pool.getGraph();
+        double[] weights = graph.getArcWeights();
+        boolean[] isTarget = new boolean[graph.getNodeCount()];
+        int[] componentTargets = new int[components.getComponentCount()]; // distinct targets in each component
+        for (int target : targets) {
+            if (!isTarget[target]) {
+                isTarget[target] = true;
+                componentTargets[components.getComponent(target)]++;
+            }
+        }
+        double[] matrix = newMatrix(sources.length, targets.length);
+        IntStream.range(0, sources.length).parallel().forEach(row -> {
+            QueryContext context = pool.acquire();
+            try {
+                NodeQueue queue = context.getQueue();
+                context.update(sources[row], 0, -1);
+                queue.push(sources[row], 0);
+                int targetsLeft = componentTargets[components.getComponent(sources[row])];
+                while (!queue.isEmpty() && targetsLeft > 0) {
+                    int current = queue.poll();
+                    context.settle(current);
+                    if (isTarget[current]) {
+                        targetsLeft--;
+                    }
+                    double currentDist = context.getDist(current);
+                    for (int arc = graph.getFirstArc(current); arc < graph.getFirstArc(current + 1); arc++) {
+                        int next = graph.getArcTarget(arc);
+                        double newDist = currentDist + weights[arc];
+                        if (!context.isSettled(next) && newDist < context.getDist(next)) {
+                            context.update(next, newDist, -1);
+                            queue.push(next, newDist);
+                        }
+                    }
+                }
+                for (int column = 0; column < targets.length; column++) {
+                    matrix[row * targets.length + column] = context.getDist(targets[column]);
+                }
+            } finally {
+                pool.release(context);
+            }
+        });
+        return matrix;
+    }
+
+    /**
+     * Computes the shortest path distance from every source to every target with a contraction hierarchy,
+     * using buckets. One upward search from each target leaves, at every node it settles, an entry holding the
+     * target and its distance. One upward search from each source then scans the entries of the nodes it
+     * settles: every shortest path has a highest node reached by both searches, so the smallest sum over the
+     * entries is the distance. This takes one small search per source and per target instead of one per pair.
+     * Both rounds of searches run in parallel.
+     *
+     * @param hierarchy the contraction hierarchy of the graph
+     * @param pool      the query contexts the searches use
+     * @param sources   the indices of the source nodes
+     * @param targets   the indices of the target nodes
+     * @return the distances in miles in row-major order, entry [i * targets.length + j] going from sources[i] to
+     * targets[j], Double.POSITIVE_INFINITY where there is no path
+     * @throws IllegalArgumentException if the matrix has more entries than an array can hold
+     */
+    public static double[] compute(ContractionHierarchy hierarchy, QueryContextPool pool, int[] sources,
+                                   int[] targets) {
+        double[] matrix = newMatrix(sources.length, targets.length);
+        Arrays.fill(matrix, Double.POSITIVE_INFINITY);
+        int nodeCount = hierarchy.getGraph().getNodeCount();
+        int[][] reachedNodes = new int[targets.length][];
+        double[][] reachedDists = new double[targets.length][];
+        IntStream.range(0, targets.length).parallel().forEach(column -> {
+            QueryContext context = pool.acquire();
+            try {
+                int[] settled = upwardSearch(hierarchy, targets[column], context);
+                reachedNodes[column] = settled;
+                reachedDists[column] = new double[settled.length];
+                for (int i = 0; i < settled.length; i++) {
+                    reachedDists[column][i] = context.getDist(settled[i]);
+                }
+            } finally {
+                pool.release(context);
+            }
+        });
+
+        // gather the entries into one bucket per node, laid out like the adjacency arrays of a graph
+        int[] firstEntry = new int[nodeCount + 1];
+        for (int[] settled : reachedNodes) {
+            for (int node : settled) {
+                firstEntry[node + 1]++;
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            firstEntry[node + 1] += firstEntry[node];
+        }
+        int[] entryColumns = new int[firstEntry[nodeCount]];
+        double[] entryDists = new double[firstEntry[nodeCount]];
+        int[] next = Arrays.copyOf(firstEntry, nodeCount);
+        for (int column = 0; column < targets.length; column++) {
+            for (int i = 0; i < reachedNodes[column].length; i++) {
+                int entry = next[reachedNodes[column][i]]++;
+                entryColumns[entry] = column;
+                entryDists[entry] = reachedDists[column][i];
+            }
+        }
+
+        IntStream.range(0, sources.length).parallel().forEach(row -> {
+            QueryContext context = pool.acquire();
+            try {
+                int base = row * targets.length;
+                for (int node : upwardSearch(hierarchy, sources[row], context)) {
+                    double dist = context.getDist(node);
+                    for (int entry = firstEntry[node]; entry < firstEntry[node + 1]; entry++) {
+                        int cell = base + entryColumns[entry];
+                        matrix[cell] = Math.min(matrix[cell], dist + entryDists[entry]);
+                    }
+                }
+            } finally {
+                pool.release(context);
+            }
+        });
+        return matrix;
+    }
+
+    /**
+     * Private helper method that allocates a row-major matrix, refusing sizes whose entry count overflows an int.
+     */
+    private static double[] newMatrix(int rows, int columns) {
+        try {
+            return new double[Math.multiplyExact(rows, columns)];
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Cannot compute distance matrix, " + rows + " sources by " + columns
+                    + " targets is too many entries");
+        }
+    }
+
+    /**
+     * Private helper method that runs Dijkstra's algorithm from a node over the upward arcs of a hierarchy
+     * until its whole upward search space is settled.
+     *
+     * @return the settled nodes, their distances are left in the context
+     */
+    private static int[] upwardSearch(ContractionHierarchy hierarchy, int source, QueryContext context) {
+        double[] weights = hierarchy.getUpWeights();
+        int[] settled = new int[16];
+        NodeQueue queue = context.getQueue();
+        context.update(source, 0, -1);
+        queue.push(source, 0);
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            if (context.getSettledCount() == settled.length) {
+                settled = Arrays.copyOf(settled, 2 * settled.length);
+            }
+            settled[context.getSettledCount()] = current;
+            context.settle(current);
+            double currentDist = context.getDist(current);
+            for (int arc = hierarchy.getFirstUp(current); arc < hierarchy.getFirstUp(current + 1); arc++) {
+                int next = hierarchy.getUpTarget(arc);
+                double newDist = currentDist + weights[arc];
+                if (newDist < context.getDist(next)) {
+                    context.update(next, newDist, -1);
+                    queue.push(next, newDist);
+                }
+            }
+        }
+        return Arrays.copyOf(settled, context.getSettledCount());
+    }
+}
@@ -3,40 +3,39 @@
  */
 
 public class Edge {
-    private final String id; // the unique identifier for this edge
-    private final Node a; // the first node connected by this edge
-    private final Node b; // the second node connected by this edge
-    private final double weight; // the weight or distance of this edge
+    private final Graph graph; // the graph whose arrays back this edge
+    private final int index; // position of the edge inside the graph's arrays
 
     // getters and setters
+    public int getIndex() {
+        return index;
+    }
+
     public String getId() {
-        return id;
+        return graph.getEdgeIds().get(index);
     }
 
     public Node getA() {
-        return a;
+        return graph.getNode(graph.getEdgeA(index));
     }
 
     public Node getB() {
-        return b;
+        return graph.getNode(graph.getEdgeB(index));
     }
 
     public double getWeight() {
-        return weight;
+        return graph.getEdgeWeight(index);
     }
 
     /**
-     * Creates an Edge object with a unique identifier, first and second nodes connected, and the weight or distance of this edge.
+     * Creates an Edge object viewing the edge at the given index of a graph.
      *
-     * @param id a unique identifier for this edge
-     * @param a  the first node connected by this edge
-     * @param b  the second node connected by this edge
+     * @param graph the graph that stores the edge
+     * @param index the index of the edge inside the graph
      */
-    public Edge(String id, Node a, Node b) {
-        this.id = id;
-        this.a = a;
-        this.b = b;
-        this.weight = Node.dist(a, b);
+    public Edge(Graph graph, int index) {
+        this.graph = graph;
+        this.index = index;
     }
 
     /**
@@ -47,21 +46,31 @@ public class Edge {
      * @return the other node connected to this edge, or null if x is not part of the edge
      */
     public Node getNext(Node x) {
-        if (x == this.a) {
-            return this.b;
+        if (x.getIndex() == graph.getEdgeA(index)) {
+            return this.getB();
         }
-        if (x == this.b) {
-            return this.a;
+        if (x.getIndex() == graph.getEdgeB(index)) {
+            return this.getA();
         }
         return null;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Edge other && other.graph == this.graph && other.index == this.index;
+    }
+
+    @Override
+    public int hashCode() {
+        return index;
+    }
+
     /**
      * Returns a string representation of this edge in the format "id(weight)mi".
      *
      * @return a string representation of this edge
      */
     public String toString() {
-        return this.id + "(" + String.format("%.4f", this.weight) + "mi)";
+        return this.getId() + "(" + String.format("%.4f", this.getWeight()) + "mi)";
     }
 }
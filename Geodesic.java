@@ -0,0 +1,138 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class Geodesic {
+    private final double[] latitudes; // latitude of each node in radians
+    private final double[] longitudes; // longitude of each node in radians
+    private final double[] cosLatitudes; // cosine of the latitude of each node
+
+    /**
+     * Precomputes the trigonometry of a set of points, so distances between them cost two sines, a square root
+     * and an arcsine, or only a square root in the approximate mode, with no conversions to radians.
+     *
+     * @param coordinates the latitude and longitude of each point in degrees, packed as [lat0, lon0, lat1, ...]
+     */
+    public Geodesic(double[] coordinates) {
+        int count = coordinates.length / 2;
+        this.latitudes = new double[count];
+        this.longitudes = new double[count];
+        this.cosLatitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            this.latitudes[i] = Math.toRadians(coordinates[2 * i]);
+            this.longitudes[i] = Math.toRadians(coordinates[2 * i + 1]);
+            this.cosLatitudes[i] = Math.cos(this.latitudes[i]);
+        }
+    }
+
+    /**
+     * Calculates the great-circle distance between two points using the Haversine formula. The result is the
+     * same, to the last bit, as Node.dist on their coordinates.
+     *
+     * @param a the index of the first point
+     * @param b the index of the second point
+     * @return the distance between the two points in miles
+     */
+    public double distance(int a, int b) {
+        return haversine(latitudes[a], longitudes[a], cosLatitudes[a], latitudes[b], longitudes[b], cosLatitudes[b]);
+    }
+
+    /**
+     * Calculates an approximate distance between two points by treating the sphere as flat around them, with
+     * the longitude scaled by the geometric mean of the cosines of the two latitudes. Between 80°S and 80°N
+     * the relative error is below 1e-7 × d² for points d miles apart: under 1e-9 for a 0.1 mi road, 1e-7
+     * at 1 mi and 1e-5 at 10 mi, so it is exact for all practical purposes on road segments but not for
+     * distances across a region.
+     *
+     * @param a the index of the first point
+     * @param b the index of the second point
+     * @return the approximate distance between the two points in miles
+     */
+    public double approximateDistance(int a, int b) {
+        double dLat = latitudes[b] - latitudes[a];
+        double dLon = longitudes[b] - longitudes[a];
+        return Node.EARTH_RADIUS_MI * Math.sqrt(dLat * dLat + cosLatitudes[a] * cosLatitudes[b] * (dLon * dLon));
+    }
+
+    /**
+     * Calculates the great-circle distances between many pairs of points at once, such as the lengths of the
+     * edges of a graph. The loop reads only primitive arrays and has no branches.
+     *
+     * @param from      the index of the first point of each pair
+     * @param to        the index of the second point of each pair
+     * @param distances receives the distance of each pair in miles
+     */
+    public void distances(int[] from, int[] to, double[] distances) {
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = this.distance(from[i], to[i]);
+        }
+    }
+
+    /**
+     * Calculates the great-circle distance between two coordinates using the Haversine formula.
+     *
+     * @param latitudeA  the latitude of the first point in degrees
+     * @param longitudeA the longitude of the first point in degrees
+     * @param latitudeB  the latitude of the second point in degrees
+     * @param longitudeB the longitude of the second point in degrees
+     * @return the distance between the two points in miles
+     */
+    public static double distance(double latitudeA, double longitudeA, double latitudeB, double longitudeB) {
+        double latA = Math.toRadians(latitudeA);
+        double latB = Math.toRadians(latitudeB);
+        return haversine(latA, Math.toRadians(longitudeA), Math.cos(latA), latB, Math.toRadians(longitudeB),
+                Math.cos(latB));
+    }
+
+    /**
+     * Calculates the great-circle distances between the coordinates at the same positions of four arrays.
+     *
+     * @param latitudesA  the latitude of the first point of each pair in degrees
+     * @param longitudesA the longitude of the first point of each pair in degrees
+     * @param latitudesB  the latitude of the second point of each pair in degrees
+     * @param longitudesB the longitude of the second point of each pair in degrees
+     * @param distances   receives the distance of each pair in miles
+     */
+    public static void distances(double[] latitudesA, double[] longitudesA, double[] latitudesB,
+                                 double[] longitudesB, double[] distances) {
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = distance(latitudesA[i], longitudesA[i], latitudesB[i], longitudesB[i]);
+        }
+    }
+
+    /**
+     * Calculates approximate distances between the coordinates at the same positions of four arrays, treating
+     * the sphere as flat around one reference latitude. On top of the error of approximateDistance, the east-west
+     * part of each distance is off by the relative difference between the cosine of its latitude and the
+     * reference cosine, about 2.4e-4 per mile of latitude away from the reference at 43°N, so the reference
+     * should be near the middle of the points. The loop is only multiplications and square roots over primitive
+     * arrays, which the JIT compiler can turn into SIMD instructions.
+     *
+     * @param latitudesA  the latitude of the first point of each pair in degrees
+     * @param longitudesA the longitude of the first point of each pair in degrees
+     * @param latitudesB  the latitude of the second point of each pair in degrees
+     * @param longitudesB the longitude of the second point of each pair in degrees
+     * @param cosLatitude the cosine of the reference latitude
+     * @param distances   receives the approximate distance of each pair in miles
+     */
+    public static void approximateDistances(double[] latitudesA, double[] longitudesA, double[] latitudesB,
+                                            double[] longitudesB, double cosLatitude, double[] distances) {
+        double scale = Math.toRadians(1) * Node.EARTH_RADIUS_MI;
+        for (int i = 0; i < distances.length; i++) {
+            double dLat = latitudesB[i] - latitudesA[i];
+            double dLon = (longitudesB[i] - longitudesA[i]) * cosLatitude;
+            distances[i] = scale * Math.sqrt(dLat * dLat + dLon * dLon);
+        }
+    }
+
+    /**
+     * Private helper method with the Haversine formula over latitudes and longitudes in radians and the cosines
+     * of the latitudes, shared by every exact distance so they all round the same way.
+     */
+    private static double haversine(double latA, double lonA, double cosA, double latB, double lonB, double cosB) {
+        double sinLat = Math.sin((latB - latA) / 2);
+        double sinLon = Math.sin((lonB - lonA) / 2);
+        double step1 = (sinLat * sinLat) + cosA * cosB * (sinLon * sinLon);
+        return 2 * Node.EARTH_RADIUS_MI * Math.asin(Math.sqrt(step1));
+    }
+}
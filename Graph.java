@@ -5,44 +5,278 @@
 import java.util.*;
 
 public class Graph {
-    private final HashMap<String, Node> nodes; // hashmap containing nodes in the graph, mapped by their unique IDs
-    private final HashMap<String, Edge> edges; // hashmap containing edges in the graph, mapped by their unique IDs
+    private final IdTable nodeIds; // unique IDs of the nodes, indexed by node
+    private final IdTable edgeIds; // unique IDs of the edges, indexed by edge
+    private final double[] coordinates; // latitude and longitude of each node, packed as [lat0, lon0, lat1, lon1, ...]
+    private final int[] edgeA; // first node connected by each edge
+    private final int[] edgeB; // second node connected by each edge
+    private volatile double[] edgeWeights; // weight or distance of each edge in miles, replaced whole on updates
+    private final int[] firstArc; // index of the first arc leaving each node, with one extra entry marking the end
+    private final int[] arcTargets; // node reached by each arc
+    private final int[] arcEdges; // edge traversed by each arc
+    private volatile double[] arcWeights; // weight of each arc, copied from its edge so relaxations stay in one array
+    private volatile long weightVersion; // number of weight updates applied, published after the weights
+    private volatile Geodesic geodesic; // radians and cosines of the node coordinates, computed on first use
 
     // getters and setters
-    public HashMap<String, Edge> getEdges() {
-        return edges;
+    public int getNodeCount() {
+        return nodeIds.size();
     }
 
-    public HashMap<String, Node> getNodes() {
-        return nodes;
+    public int getEdgeCount() {
+        return edgeA.length;
+    }
+
+    public IdTable getNodeIds() {
+        return nodeIds;
+    }
+
+    public IdTable getEdgeIds() {
+        return edgeIds;
+    }
+
+    public double getLatitude(int node) {
+        return coordinates[2 * node];
+    }
+
+    public double getLongitude(int node) {
+        return coordinates[2 * node + 1];
+    }
+
+    public int getEdgeA(int edge) {
+        return edgeA[edge];
+    }
+
+    public int getEdgeB(int edge) {
+        return edgeB[edge];
+    }
+
+    public double getEdgeWeight(int edge) {
+        return edgeWeights[edge];
+    }
+
+    public int getFirstArc(int node) {
+        return firstArc[node];
+    }
+
+    public int getArcTarget(int arc) {
+        return arcTargets[arc];
+    }
+
+    public int getArcEdge(int arc) {
+        return arcEdges[arc];
+    }
+
+    public double[] getArcWeights() {
+        return arcWeights;
+    }
+
+    public double[] getEdgeWeights() {
+        return edgeWeights;
+    }
+
+    public long getWeightVersion() {
+        return weightVersion;
+    }
+
+    public Geodesic getGeodesic() {
+        Geodesic geodesic = this.geodesic;
+        if (geodesic == null) {
+            geodesic = new Geodesic(coordinates); // racing threads compute equal copies, any of them will do
+            this.geodesic = geodesic;
+        }
+        return geodesic;
+    }
+
+    /**
+     * Constructs a new graph in compressed sparse row form from parsed intersections and roads.
+     * Edge weights are the Haversine distances between the endpoints of each edge.
+     *
+     * @param nodeIds     the unique IDs of the nodes
+     * @param coordinates the latitude and longitude of each node, packed as [lat0, lon0, lat1, lon1, ...]
+     * @param edgeIds     the unique IDs of the edges
+     * @param edgeA       the first node connected by each edge
+     * @param edgeB       the second node connected by each edge
+     */
+    public Graph(IdTable nodeIds, double[] coordinates, IdTable edgeIds, int[] edgeA, int[] edgeB) {
+        this.nodeIds = nodeIds;
+        this.edgeIds = edgeIds;
+        this.coordinates = coordinates;
+        this.edgeA = edgeA;
+        this.edgeB = edgeB;
+        this.edgeWeights = new double[edgeA.length];
+        this.getGeodesic().distances(edgeA, edgeB, this.edgeWeights);
+
+        // count the arcs leaving each node, then turn the counts into offsets
+        int nodeCount = nodeIds.size();
+        this.firstArc = new int[nodeCount + 1];
+        for (int e = 0; e < edgeA.length; e++) {
+            this.firstArc[edgeA[e] + 1]++;
+            this.firstArc[edgeB[e] + 1]++;
+        }
+        for (int v = 0; v < nodeCount; v++) {
+            this.firstArc[v + 1] += this.firstArc[v];
+        }
+
+        // every undirected edge becomes one arc in each direction
+        this.arcTargets = new int[2 * edgeA.length];
+        this.arcEdges = new int[2 * edgeA.length];
+        this.arcWeights = new double[2 * edgeA.length];
+        int[] next = Arrays.copyOf(this.firstArc, nodeCount);
+        for (int e = 0; e < edgeA.length; e++) {
+            this.addArc(next[edgeA[e]]++, edgeB[e], e);
+            this.addArc(next[edgeB[e]]++, edgeA[e], e);
+        }
     }
 
     /**
-     * Constructs a new graph object with empty maps of nodes and edges.
+     * Constructs a graph from arrays that were already computed, such as the ones read from a GraphSnapshot.
+     * Nothing is recomputed or checked, the arrays must describe a graph built by the other constructor.
+     *
+     * @param nodeIds     the unique IDs of the nodes
+     * @param coordinates the latitude and longitude of each node, packed as [lat0, lon0, lat1, lon1, ...]
+     * @param edgeIds     the unique IDs of the edges
+     * @param edgeA       the first node connected by each edge
+     * @param edgeB       the second node connected by each edge
+     * @param edgeWeights the weight of each edge in miles
+     * @param firstArc    the index of the first arc leaving each node, followed by the number of arcs
+     * @param arcTargets  the node reached by each arc
+     * @param arcEdges    the edge traversed by each arc
+     * @param arcWeights  the weight of each arc
      */
-    public Graph() {
-        this.nodes = new HashMap<>();
-        this.edges = new HashMap<>();
+    public Graph(IdTable nodeIds, double[] coordinates, IdTable edgeIds, int[] edgeA, int[] edgeB,
+                 double[] edgeWeights, int[] firstArc, int[] arcTargets, int[] arcEdges, double[] arcWeights) {
+        this.nodeIds = nodeIds;
+        this.edgeIds = edgeIds;
+        this.coordinates = coordinates;
+        this.edgeA = edgeA;
+        this.edgeB = edgeB;
+        this.edgeWeights = edgeWeights;
+        this.firstArc = firstArc;
+        this.arcTargets = arcTargets;
+        this.arcEdges = arcEdges;
+        this.arcWeights = arcWeights;
     }
 
     /**
-     * Adds a node to the graph.
+     * Returns the straight-line length of an edge, its weight before any update.
      *
-     * @param node The node to be added to the graph.
+     * @param edge the index of the edge
+     * @return the Haversine distance between the endpoints of the edge in miles
      */
-    public void addNode(Node node) {
-        this.nodes.put(node.getId(), node);
+    public double getEdgeLength(int edge) {
+        return this.getGeodesic().distance(edgeA[edge], edgeB[edge]);
     }
 
     /**
-     * Adds an edge to the graph.
+     * Returns a copy of the edge weights with some edges set to new weights, without changing the graph.
+     * Weights are in miles; Double.POSITIVE_INFINITY closes an edge. A weight may not be lower than the
+     * straight-line length of its edge, because the distance estimates of A* rely on that.
      *
-     * @param edge The edge to be added to the graph.
+     * @param edges   the indices of the edges to change
+     * @param weights the new weight of each of those edges
+     * @return the new weight of every edge, to be passed to setEdgeWeights
+     * @throws IllegalArgumentException if an edge index is out of range or a weight is NaN or too low
      */
-    public void addEdge(Edge edge) {
-        edge.getA().addEdge(edge);
-        edge.getB().addEdge(edge);
-        this.edges.put(edge.getId(), edge);
+    public double[] withEdgeWeights(int[] edges, double[] weights) {
+        if (edges.length != weights.length) {
+            throw new IllegalArgumentException("Expected one weight per edge, got " + weights.length
+                    + " weights for " + edges.length + " edges");
+        }
+        double[] updated = this.edgeWeights.clone();
+        for (int i = 0; i < edges.length; i++) {
+            int edge = edges[i];
+            if (edge < 0 || edge >= edgeA.length) {
+                throw new IllegalArgumentException("No edge with index " + edge);
+            }
+            double length = this.getEdgeLength(edge);
+            // allow for the rounding of lengths that were printed and read back
+            if (Double.isNaN(weights[i]) || weights[i] < length * (1 - 1e-9)) {
+                throw new IllegalArgumentException(String.format("Weight %s of road [%s] is below its length %.6f",
+                        weights[i], edgeIds.get(edge), length));
+            }
+            updated[edge] = Math.max(weights[i], length);
+        }
+        return updated;
+    }
+
+    /**
+     * Replaces the weight of every edge at once. The arc weights are rebuilt into a new array and both arrays
+     * are swapped in before the weight version goes up, so a search that reads getArcWeights once when it
+     * starts sees either all of an update or none of it, and a reader that checks getWeightVersion before
+     * reading the weights never pairs newer weights with an older version.
+     *
+     * @param weights the new weight of each edge, usually made by withEdgeWeights; the graph keeps the array
+     * @return the new weight version
+     */
+    public synchronized long setEdgeWeights(double[] weights) {
+        if (weights.length != edgeA.length) {
+            throw new IllegalArgumentException("Expected " + edgeA.length + " edge weights, got " + weights.length);
+        }
+        double[] arcs = new double[arcEdges.length];
+        for (int arc = 0; arc < arcs.length; arc++) {
+            arcs[arc] = weights[arcEdges[arc]];
+        }
+        this.edgeWeights = weights;
+        this.arcWeights = arcs;
+        return ++this.weightVersion;
+    }
+
+    /**
+     * Private helper method to fill in one arc of the adjacency arrays.
+     */
+    private void addArc(int arc, int target, int edge) {
+        this.arcTargets[arc] = target;
+        this.arcEdges[arc] = edge;
+        this.arcWeights[arc] = this.edgeWeights[edge];
+    }
+
+    /**
+     * Returns a view of the node at the given index.
+     *
+     * @param index the index of the node
+     * @return a Node object backed by this graph
+     */
+    public Node getNode(int index) {
+        return new Node(this, index);
+    }
+
+    /**
+     * Returns a view of the edge at the given index.
+     *
+     * @param index the index of the edge
+     * @return an Edge object backed by this graph
+     */
+    public Edge getEdge(int index) {
+        return new Edge(this, index);
+    }
+
+    /**
+     * Given an edge and one of its nodes, returns the index of the other node connected by the edge.
+     *
+     * @param edge the index of the edge
+     * @param node the index of one of the edge's nodes
+     * @return the index of the other node
+     */
+    public int getOtherEnd(int edge, int node) {
+        return edgeA[edge] == node ? edgeB[edge] : edgeA[edge];
+    }
+
+    /**
+     * Computes a fingerprint of the graph's structure and weights, used to tell whether data derived from a graph
+     * and saved to disk still matches it.
+     *
+     * @return a 64-bit hash of the node count, the edge endpoints and the edge weights
+     */
+    public long fingerprint() {
+        double[] weights = this.edgeWeights;
+        long hash = 0xcbf29ce484222325L ^ this.getNodeCount();
+        for (int e = 0; e < edgeA.length; e++) {
+            hash = (hash ^ edgeA[e]) * 0x100000001b3L;
+            hash = (hash ^ edgeB[e]) * 0x100000001b3L;
+            hash = (hash ^ Double.doubleToLongBits(weights[e])) * 0x100000001b3L;
+        }
+        return hash;
     }
 
     /**
@@ -52,37 +286,60 @@ public class Graph {
      * @return The node object with the given ID, or null if no such node exists.
      */
     public Node find(String id) {
-        return this.nodes.get(id);
+        int index = this.nodeIds.indexOf(id);
+        return index < 0 ? null : this.getNode(index);
     }
 
     /**
      * Performs Dijkstra's algorithm on the graph starting from a given node.
+     * Distances and previous edges are written to the given context, never to the graph,
+     * so any number of threads can search the same graph with their own contexts.
+     * Each node is queued at most once, its key is lowered in place when a shorter distance is found.
+     *
+     * @param source  The source node for the algorithm.
+     * @param context The context that receives the search state, started by the caller.
+     * @throws NullPointerException if source is null
+     */
+    public static void dijkstra(Node source, QueryContext context) {
+        dijkstra(source, null, context);
+    }
+
+    /**
+     * Performs Dijkstra's algorithm on the graph starting from a given node and stops once the target is settled.
+     * Only the nodes closer to the source than the target are settled.
      *
-     * @param source The source node for the algorithm.
+     * @param source  The source node for the algorithm.
+     * @param target  The node whose distance is wanted, or null to settle every reachable node.
+     * @param context The context that receives the search state, started by the caller.
      * @throws NullPointerException if source is null
      */
-    public static void dijkstra(Node source) {
+    public static void dijkstra(Node source, Node target, QueryContext context) {
         int relaxations = 0;
         if (source == null) {
             throw new NullPointerException("Cannot perform Dijkstra's Algorithm, source is null");
         }
-        source.setDist(0);
-        HashSet<Node> visited = new HashSet<>();
-        PriorityQueue<Node> queue = new PriorityQueue<>(Comparator.comparingDouble(Node::getDist));
-        queue.add(source);
+        Graph graph = source.getGraph();
+        double[] weights = graph.getArcWeights();
+        NodeQueue queue = context.getQueue();
+        context.update(source.getIndex(), 0, -1);
+        queue.push(source.getIndex(), 0);
+        int stop = target == null ? -1 : target.getIndex();
         while (!queue.isEmpty()) {
-            Node current = queue.poll();
-            visited.add(current);
-            for (Edge e : current.getEdges()) {
-                Node next = e.getNext(current);
-                if (visited.contains(next)) {
+            int current = queue.poll();
+            context.settle(current);
+            if (current == stop) {
+                return;
+            }
+            double currentDist = context.getDist(current);
+            for (int arc = graph.firstArc[current]; arc < graph.firstArc[current + 1]; arc++) {
+                int next = graph.arcTargets[arc];
+                if (context.isSettled(next)) {
                     continue;
                 }
-                double newDist = current.getDist() + e.getWeight();
-                if (newDist < next.getDist()) {
-                    next.setDist(newDist);
-                    next.setPrev(current);
-                    queue.add(next);
+                double newDist = currentDist + weights[arc];
+                if (newDist < context.getDist(next)) {
+                    context.update(next, newDist, graph.arcEdges[arc]);
+                    queue.push(next, newDist);
                     relaxations++;
                 }
             }
@@ -92,32 +349,55 @@ public class Graph {
     /**
      * Finds the shortest path between two nodes in the graph using Dijkstra's algorithm.
      *
-     * @param source The source node of the path.
-     * @param target The target node of the path.
+     * @param source  The source node of the path.
+     * @param target  The target node of the path.
+     * @param context The context holding the result of a search from source.
      * @return A Path object representing the shortest path between source and target nodes.
      * @throws NullPointerException if target is null
      */
-    public static Path shortestPath(Node source, Node target) {
+    public static Path shortestPath(Node source, Node target, QueryContext context) {
         if (target == null) {
             throw new NullPointerException("Cannot find shortest path, target is null");
         }
-        LinkedList<Node> path = new LinkedList<>();
-        for (Node node = target; node != null; node = node.getPrev()) {
-            path.addFirst(node);
-        }
-        if (!path.contains(source)) {
-            return new Path(source, target, null);
-        }
-        return new Path(source, target, path);
+        return Path.trace(source, target, context.getDist(target.getIndex()), context::getPrevEdge);
     }
 
     /**
-     * Resets the distance and previous node values of all nodes in the graph.
+     * Joins the results of a search from the source and a search from the target at a node reached by both.
+     *
+     * @param source   The source node of the path.
+     * @param target   The target node of the path.
+     * @param forward  The context holding the result of a search from source.
+     * @param meeting  The index of a node reached by both searches.
+     * @param backward The context holding the result of a search from target.
+     * @return A Path object representing the path from source to target through the meeting node.
      */
-    public void resetNodes() {
-        for (Node node : this.getNodes().values()) {
-            node.setDist(Double.POSITIVE_INFINITY);
-            node.setPrev(null);
+    public static Path shortestPath(Node source, Node target, QueryContext forward, int meeting,
+                                    QueryContext backward) {
+        Graph graph = source.getGraph();
+        int forwardLength = 0;
+        for (int node = meeting, edge = forward.getPrevEdge(node); edge != -1; edge = forward.getPrevEdge(node)) {
+            node = graph.getOtherEnd(edge, node);
+            forwardLength++;
+        }
+        int backwardLength = 0;
+        for (int node = meeting, edge = backward.getPrevEdge(node); edge != -1; edge = backward.getPrevEdge(node)) {
+            node = graph.getOtherEnd(edge, node);
+            backwardLength++;
+        }
+        int[] nodes = new int[forwardLength + backwardLength + 1];
+        int[] edges = new int[forwardLength + backwardLength];
+        nodes[forwardLength] = meeting;
+        for (int i = forwardLength - 1, node = meeting; i >= 0; i--) {
+            edges[i] = forward.getPrevEdge(node);
+            node = graph.getOtherEnd(edges[i], node);
+            nodes[i] = node;
+        }
+        for (int i = forwardLength, node = meeting; i < edges.length; i++) {
+            edges[i] = backward.getPrevEdge(node);
+            node = graph.getOtherEnd(edges[i], node);
+            nodes[i + 1] = node;
         }
+        return new Path(source, target, nodes, edges, forward.getDist(meeting) + backward.getDist(meeting));
     }
 }
@@ -0,0 +1,84 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class GraphBuilder {
+    private final ArrayList<String> nodeIds; // IDs of the intersections added so far
+    private final ArrayList<String> edgeIds; // IDs of the roads added so far
+    private final ArrayList<String> endpointIds; // IDs of the two intersections of each road, resolved in build()
+    private double[] coordinates; // packed latitude and longitude of the intersections added so far
+
+    /**
+     * Creates an empty builder.
+     */
+    public GraphBuilder() {
+        this.nodeIds = new ArrayList<>();
+        this.edgeIds = new ArrayList<>();
+        this.endpointIds = new ArrayList<>();
+        this.coordinates = new double[64];
+    }
+
+    /**
+     * Adds an intersection.
+     *
+     * @param id        the unique ID of the intersection
+     * @param latitude  the latitude of the intersection
+     * @param longitude the longitude of the intersection
+     */
+    public void addNode(String id, double latitude, double longitude) {
+        int index = this.nodeIds.size();
+        if (2 * index + 2 > this.coordinates.length) {
+            this.coordinates = Arrays.copyOf(this.coordinates, 2 * this.coordinates.length);
+        }
+        this.coordinates[2 * index] = latitude;
+        this.coordinates[2 * index + 1] = longitude;
+        this.nodeIds.add(id);
+    }
+
+    /**
+     * Adds a road. Its intersections are looked up when the graph is built, so they may be added later.
+     *
+     * @param id the unique ID of the road
+     * @param a  the ID of the first intersection connected by the road
+     * @param b  the ID of the second intersection connected by the road
+     */
+    public void addEdge(String id, String a, String b) {
+        this.edgeIds.add(id);
+        this.endpointIds.add(a);
+        this.endpointIds.add(b);
+    }
+
+    /**
+     * Builds the compressed graph from everything added so far.
+     *
+     * @return the new graph
+     * @throws IllegalArgumentException if a road references an intersection that was never added
+     */
+    public Graph build() {
+        IdTable nodes = IdTable.of(this.nodeIds);
+        int[] edgeA = new int[this.edgeIds.size()];
+        int[] edgeB = new int[this.edgeIds.size()];
+        for (int e = 0; e < edgeA.length; e++) {
+            edgeA[e] = this.resolve(nodes, e, 0);
+            edgeB[e] = this.resolve(nodes, e, 1);
+        }
+        return new Graph(nodes, Arrays.copyOf(this.coordinates, 2 * this.nodeIds.size()),
+                IdTable.of(this.edgeIds), edgeA, edgeB);
+    }
+
+    /**
+     * Private helper method to find the index of one endpoint of a road.
+     */
+    private int resolve(IdTable nodes, int edge, int side) {
+        String id = this.endpointIds.get(2 * edge + side);
+        int index = nodes.indexOf(id);
+        if (index < 0) {
+            throw new IllegalArgumentException("Road [%s] references unknown intersection [%s]"
+                    .formatted(this.edgeIds.get(edge), id));
+        }
+        return index;
+    }
+}
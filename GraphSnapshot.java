@@ -0,0 +1,209 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+public class GraphSnapshot {
+    private static final int MAGIC = 0x47534e50; // "GSNP", marks a graph snapshot
+    private static final int FORMAT_VERSION = 1; // bumped whenever the snapshot layout changes
+    private static final int HEADER_BYTES = 64; // size of the header, keeps the arrays after it 8-byte aligned
+    private static final int SECTION_COUNT = 12; // number of arrays stored after the header
+
+    /**
+     * Loads the graph of a map file from its snapshot, or parses the text file and writes the snapshot if the
+     * snapshot is missing, stale or damaged. The snapshot lives next to the map as [file_name].txt.snapshot and
+     * is fresh while the size and modification time of the text file are the ones recorded in it.
+     *
+     * @param source the text map file
+     * @return the graph described by the map file
+     */
+    public static Graph loadOrBuild(File source) {
+        File snapshot = new File(source.getPath() + ".snapshot");
+        if (snapshot.isFile()) {
+            try {
+                long start = System.nanoTime();
+                Graph graph = load(snapshot, source);
+                if (graph != null) {
+                    System.err.printf("Loaded %d intersections and %d roads from snapshot %s in %.1fms\n",
+                            graph.getNodeCount(), graph.getEdgeCount(), snapshot, (System.nanoTime() - start) / 1e6);
+                    return graph;
+                }
+            } catch (IOException e) {
+                System.err.printf("Ignoring unreadable snapshot %s: %s\n", snapshot, e.getMessage());
+            }
+        }
+        Graph graph = MapLoader.load(source);
+        try {
+            save(graph, snapshot, source);
+        } catch (IOException e) {
+            System.err.printf("Could not save snapshot %s: %s\n", snapshot, e.getMessage());
+        }
+        return graph;
+    }
+
+    /**
+     * Reads a graph written by save. Every array is copied in bulk from the memory-mapped file, after the
+     * checksum of the whole file is verified, so nothing is parsed or recomputed per element.
+     *
+     * @param snapshot the snapshot file to read
+     * @param source   the text map file the snapshot must have been written from
+     * @return the graph, or null if the snapshot is of another format version or the text file has changed
+     * @throws IOException if the snapshot cannot be read, is truncated or fails its checksum
+     */
+    public static Graph load(File snapshot, File source) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("truncated header");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION
+                    || header.getLong(8) != source.length() || header.getLong(16) != source.lastModified()) {
+                return null;
+            }
+            int nodeCount = header.getInt(24);
+            int edgeCount = header.getInt(28);
+            int nodeIdBytes = header.getInt(32);
+            int edgeIdBytes = header.getInt(36);
+            long checksum = header.getLong(40);
+            long[] offsets = sectionOffsets(nodeCount, edgeCount, nodeIdBytes, edgeIdBytes);
+            if (channel.size() != offsets[SECTION_COUNT]) {
+                throw new IOException("expected %d bytes, found %d".formatted(offsets[SECTION_COUNT], channel.size()));
+            }
+            ByteBuffer[] sections = new ByteBuffer[SECTION_COUNT];
+            CRC32C crc = new CRC32C();
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, offsets[i], offsets[i + 1] - offsets[i])
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                crc.update(sections[i].duplicate());
+            }
+            if (crc.getValue() != checksum) {
+                throw new IOException("checksum mismatch");
+            }
+
+            double[] coordinates = new double[2 * nodeCount];
+            double[] edgeWeights = new double[edgeCount];
+            double[] arcWeights = new double[2 * edgeCount];
+            int[] nodeIdOffsets = new int[nodeCount + 1];
+            int[] edgeIdOffsets = new int[edgeCount + 1];
+            int[] edgeA = new int[edgeCount];
+            int[] edgeB = new int[edgeCount];
+            int[] firstArc = new int[nodeCount + 1];
+            int[] arcTargets = new int[2 * edgeCount];
+            int[] arcEdges = new int[2 * edgeCount];
+            byte[] nodeIds = new byte[nodeIdBytes];
+            byte[] edgeIds = new byte[edgeIdBytes];
+            sections[0].asDoubleBuffer().get(coordinates);
+            sections[1].asDoubleBuffer().get(edgeWeights);
+            sections[2].asDoubleBuffer().get(arcWeights);
+            sections[3].asIntBuffer().get(nodeIdOffsets);
+            sections[4].asIntBuffer().get(edgeIdOffsets);
+            sections[5].asIntBuffer().get(edgeA);
+            sections[6].asIntBuffer().get(edgeB);
+            sections[7].asIntBuffer().get(firstArc);
+            sections[8].asIntBuffer().get(arcTargets);
+            sections[9].asIntBuffer().get(arcEdges);
+            sections[10].get(nodeIds);
+            sections[11].get(edgeIds);
+            return new Graph(new IdTable(nodeIds, nodeIdOffsets), coordinates, new IdTable(edgeIds, edgeIdOffsets),
+                    edgeA, edgeB, edgeWeights, firstArc, arcTargets, arcEdges, arcWeights);
+        }
+    }
+
+    /**
+     * Writes a snapshot of a graph. The snapshot is written to a temporary file that replaces the old one only
+     * once it is complete, so a crash never leaves a half-written snapshot behind.
+     *
+     * @param graph    the graph to write
+     * @param snapshot the snapshot file to write
+     * @param source   the text map file the graph was read from
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void save(Graph graph, File snapshot, File source) throws IOException {
+        int nodeCount = graph.getNodeCount();
+        int edgeCount = graph.getEdgeCount();
+        IdTable nodeIds = graph.getNodeIds();
+        IdTable edgeIds = graph.getEdgeIds();
+        long[] offsets = sectionOffsets(nodeCount, edgeCount, nodeIds.getBytes().length, edgeIds.getBytes().length);
+        File temporary = new File(snapshot.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer[] sections = new MappedByteBuffer[SECTION_COUNT];
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                sections[i] = channel.map(FileChannel.MapMode.READ_WRITE, offsets[i], offsets[i + 1] - offsets[i]);
+                sections[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                sections[0].putDouble(graph.getLatitude(node)).putDouble(graph.getLongitude(node));
+                sections[7].putInt(graph.getFirstArc(node));
+            }
+            sections[7].putInt(graph.getFirstArc(nodeCount));
+            for (int edge = 0; edge < edgeCount; edge++) {
+                sections[1].putDouble(graph.getEdgeWeight(edge));
+                sections[5].putInt(graph.getEdgeA(edge));
+                sections[6].putInt(graph.getEdgeB(edge));
+            }
+            sections[2].asDoubleBuffer().put(graph.getArcWeights());
+            for (int arc = 0; arc < 2 * edgeCount; arc++) {
+                sections[8].putInt(graph.getArcTarget(arc));
+                sections[9].putInt(graph.getArcEdge(arc));
+            }
+            sections[3].asIntBuffer().put(nodeIds.getOffsets());
+            sections[4].asIntBuffer().put(edgeIds.getOffsets());
+            sections[10].put(nodeIds.getBytes());
+            sections[11].put(edgeIds.getBytes());
+
+            CRC32C crc = new CRC32C();
+            for (MappedByteBuffer section : sections) {
+                section.force();
+                crc.update(section.clear());
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(source.length())
+                    .putLong(source.lastModified())
+                    .putInt(nodeCount)
+                    .putInt(edgeCount)
+                    .putInt(nodeIds.getBytes().length)
+                    .putInt(edgeIds.getBytes().length)
+                    .putLong(crc.getValue());
+            header.force();
+        }
+        Files.move(temporary.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Private helper method that lays out the arrays of a snapshot: coordinates, edge weights and arc weights,
+     * then node ID offsets, edge ID offsets, edge endpoints and the adjacency arrays, then the node and edge ID
+     * bytes. Doubles come first so that every array starts at a multiple of its element size.
+     *
+     * @return the start of each array in the file, followed by the size of the file
+     */
+    private static long[] sectionOffsets(int nodeCount, int edgeCount, int nodeIdBytes, int edgeIdBytes) {
+        long[] lengths = {
+                16L * nodeCount, 8L * edgeCount, 16L * edgeCount,
+                4L * (nodeCount + 1), 4L * (edgeCount + 1), 4L * edgeCount, 4L * edgeCount,
+                4L * (nodeCount + 1), 8L * edgeCount, 8L * edgeCount,
+                nodeIdBytes, edgeIdBytes
+        };
+        long[] offsets = new long[SECTION_COUNT + 1];
+        offsets[0] = HEADER_BYTES;
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            offsets[i + 1] = offsets[i] + lengths[i];
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,23 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class HaversineHeuristic implements Heuristic {
+    private final Geodesic geodesic; // radians and cosines of the nodes, shared with the graph
+
+    /**
+     * Creates the great-circle heuristic for a graph. Edge weights are great-circle distances, so the
+     * great-circle distance between two nodes is a consistent lower bound. The radians and cosines of every
+     * node are computed once by the graph, leaving two sines, a square root and an arcsine per estimate.
+     *
+     * @param graph the graph whose nodes are estimated
+     */
+    public HaversineHeuristic(Graph graph) {
+        this.geodesic = graph.getGeodesic();
+    }
+
+    @Override
+    public double estimate(int node, int target) {
+        return geodesic.distance(node, target);
+    }
+}
@@ -0,0 +1,27 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public interface Heuristic {
+    /**
+     * Estimates the distance between two nodes. The estimate must never exceed the length of the shortest path
+     * between them, and must not drop by more than an edge's weight when moving along that edge, so that A*
+     * never has to settle a node twice.
+     *
+     * @param node   the index of the node being estimated
+     * @param target the index of the node the distance is measured to
+     * @return a lower bound on the shortest path distance in miles
+     */
+    double estimate(int node, int target);
+
+    /**
+     * Returns a heuristic that keeps answering from the state this one is in now, even if this one is updated
+     * later. Searches take a snapshot right after reading the arc weights they use, so a heuristic that is
+     * updated before the weights it must bound are published is never paired with weights it does not bound.
+     *
+     * @return a heuristic that does not change, this one by default
+     */
+    default Heuristic snapshot() {
+        return this;
+    }
+}
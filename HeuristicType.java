@@ -0,0 +1,36 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public enum HeuristicType {
+    CHORD, // straight line through the Earth, the cheapest to evaluate
+    HAVERSINE, // great-circle distance, the same formula that weighs the edges
+    LANDMARKS; // triangle inequality bounds from precomputed landmark distances, tighter along the roads
+
+    /**
+     * Creates a heuristic of this type for a street map. Heuristics that need preprocessing take it from the
+     * street map, which computes it once.
+     *
+     * @param map the street map whose nodes are estimated
+     * @return the new heuristic
+     */
+    public Heuristic create(StreetMap map) {
+        Graph graph = map.getGraph();
+        return switch (this) {
+            case CHORD -> new ChordHeuristic(graph);
+            case HAVERSINE -> new HaversineHeuristic(graph);
+            case LANDMARKS -> map.getLandmarks();
+        };
+    }
+
+    /**
+     * Finds the heuristic named on the command line.
+     *
+     * @param name the name of the heuristic, case-insensitive
+     * @return the matching heuristic type
+     * @throws IllegalArgumentException if no heuristic has that name
+     */
+    public static HeuristicType fromName(String name) {
+        return HeuristicType.valueOf(name.toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class IdTable {
+    private final byte[] bytes; // UTF-8 encoded IDs stored back to back
+    private final int[] offsets; // start of each ID inside bytes, with one extra entry marking the end
+    private volatile int[] slots; // open-addressing hash table holding index + 1 of each ID, 0 marks an empty slot
+
+    // getters and setters
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Creates an ID table over IDs that are already encoded back to back.
+     *
+     * @param bytes   the UTF-8 encoded IDs
+     * @param offsets the start of each ID inside bytes, followed by the end of the last ID
+     */
+    public IdTable(byte[] bytes, int[] offsets) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Creates an ID table holding the given IDs in order.
+     *
+     * @param ids the IDs to store
+     * @return an ID table where the ID at position i is ids.get(i)
+     */
+    public static IdTable of(List<String> ids) {
+        byte[][] encoded = new byte[ids.size()][];
+        int[] offsets = new int[ids.size() + 1];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = ids.get(i).getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+        byte[] bytes = new byte[offsets[encoded.length]];
+        for (int i = 0; i < encoded.length; i++) {
+            System.arraycopy(encoded[i], 0, bytes, offsets[i], encoded[i].length);
+        }
+        return new IdTable(bytes, offsets);
+    }
+
+    /**
+     * Returns the ID stored at the given position.
+     *
+     * @param index the position of the ID
+     * @return the decoded ID
+     */
+    public String get(int index) {
+        return new String(bytes, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds the position of an ID. When an ID was stored more than once, the last position wins.
+     *
+     * @param id the ID to look up
+     * @return the position of the ID, or -1 if it is not in the table
+     */
+    public int indexOf(String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        return indexOf(key, 0, key.length);
+    }
+
+    /**
+     * Finds the position of an ID given by its UTF-8 bytes.
+     *
+     * @param key    the buffer holding the ID
+     * @param offset the start of the ID inside key
+     * @param length the number of bytes in the ID
+     * @return the position of the ID, or -1 if it is not in the table
+     */
+    public int indexOf(byte[] key, int offset, int length) {
+        int[] table = this.getSlots();
+        int mask = table.length - 1;
+        for (int slot = hash(key, offset, length) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (this.matches(index, key, offset, length)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Hashes a run of bytes with FNV-1a followed by a final mix.
+     *
+     * @param key    the buffer holding the bytes
+     * @param offset the start of the run
+     * @param length the number of bytes in the run
+     * @return the hash of the run
+     */
+    public static int hash(byte[] key, int offset, int length) {
+        int h = 0x811c9dc5;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ key[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Private helper method to compare a stored ID with a run of bytes.
+     */
+    private boolean matches(int index, byte[] key, int offset, int length) {
+        int start = offsets[index];
+        if (offsets[index + 1] - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[start + i] != key[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Private helper method that builds the hash table the first time an ID is looked up.
+     * Tables that are only read by position, like road IDs, never pay for it.
+     */
+    private int[] getSlots() {
+        int[] table = slots;
+        if (table == null) {
+            synchronized (this) {
+                table = slots;
+                if (table == null) {
+                    table = new int[Integer.highestOneBit(Math.max(1, this.size()) * 2) * 2];
+                    int mask = table.length - 1;
+                    for (int index = 0; index < this.size(); index++) {
+                        int start = offsets[index];
+                        int length = offsets[index + 1] - start;
+                        int slot = hash(bytes, start, length) & mask;
+                        while (table[slot] != 0 && !this.matches(table[slot] - 1, bytes, start, length)) {
+                            slot = (slot + 1) & mask;
+                        }
+                        table[slot] = index + 1;
+                    }
+                    slots = table;
+                }
+            }
+        }
+        return table;
+    }
+}
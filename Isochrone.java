@@ -0,0 +1,263 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.Arrays;
+
+public class Isochrone {
+    private static final double QUANTUM = 1e6; // outline points per degree, about 0.1 m apart
+    private final int[] sources; // indices of the nodes the search started from
+    private final double budget; // the largest distance reached in miles
+    private final int[] nodes; // indices of the reached nodes in order of distance
+    private final double[] distances; // distance of each reached node from its nearest source
+    private final int[] origins; // position in sources of the nearest source of each reached node
+    private final double[][] outlines; // outline of the area reached from each source, null if not computed
+
+    // getters and setters
+    public int[] getSources() {
+        return sources;
+    }
+
+    public double getBudget() {
+        return budget;
+    }
+
+    public int[] getNodes() {
+        return nodes;
+    }
+
+    public double[] getDistances() {
+        return distances;
+    }
+
+    public int[] getOrigins() {
+        return origins;
+    }
+
+    public double[][] getOutlines() {
+        return outlines;
+    }
+
+    /**
+     * Private constructor, isochrones are made by compute.
+     */
+    private Isochrone(int[] sources, double budget, int[] nodes, double[] distances, int[] origins,
+                      double[][] outlines) {
+        this.sources = sources;
+        this.budget = budget;
+        this.nodes = nodes;
+        this.distances = distances;
+        this.origins = origins;
+        this.outlines = outlines;
+    }
+
+    /**
+     * Finds every intersection within a distance of any of a set of sources with one Dijkstra run started from
+     * all of them at once. The search stops at the first node beyond the budget and never queues one, so it
+     * only explores the area it returns. Each node is labelled with its nearest source by passing the label
+     * along in place of the predecessor edge, so no paths are kept.
+     * The outline of the area reached from each source is the convex hull of its nodes and of the points where
+     * the budget runs out partway along the roads leaving them; it is a quick shape for display, not an exact
+     * boundary, and areas of different sources may overlap.
+     *
+     * @param pool     the query contexts the search uses, which also give the graph
+     * @param sources  the indices of the source nodes
+     * @param budget   the largest distance to reach in miles
+     * @param outlines whether to compute the outline of the area of each source
+     * @return the reached nodes, their distances and nearest sources, and the outlines if asked for
+     * @throws IllegalArgumentException if the budget is negative or NaN
+     */
+    public static Isochrone compute(QueryContextPool pool, int[] sources, double budget, boolean outlines) {
+        if (!(budget >= 0)) {
+            throw new IllegalArgumentException("Expected a distance of at least 0 miles, got " + budget);
+        }
+        Graph graph = pool.getGraph();
+        double[] weights = graph.getArcWeights();
+        QueryContext context = pool.acquire();
+        try {
+            NodeQueue queue = context.getQueue();
+            for (int origin = 0; origin < sources.length; origin++) {
+                if (context.getDist(sources[origin]) > 0) {
+                    context.update(sources[origin], 0, origin);
+                    queue.push(sources[origin], 0);
+                }
+            }
+            int[] nodes = new int[16];
+            int[] origins = new int[16];
+            long[] points = outlines ? new long[16] : null; // outline points packed by pointKey
+            int[] pointOrigins = outlines ? new int[16] : null;
+            int pointCount = 0;
+            while (!queue.isEmpty()) {
+                int current = queue.poll();
+                int origin = context.getPrevEdge(current);
+                if (context.getSettledCount() == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                    origins = Arrays.copyOf(origins, 2 * origins.length);
+                }
+                nodes[context.getSettledCount()] = current;
+                origins[context.getSettledCount()] = origin;
+                context.settle(current);
+                double currentDist = context.getDist(current);
+                for (int arc = graph.getFirstArc(current); arc < graph.getFirstArc(current + 1); arc++) {
+                    int next = graph.getArcTarget(arc);
+                    double newDist = currentDist + weights[arc];
+                    if (newDist > budget) {
+                        if (outlines && newDist != Double.POSITIVE_INFINITY) {
+                            if (pointCount == points.length) {
+                                points = Arrays.copyOf(points, 2 * pointCount);
+                                pointOrigins = Arrays.copyOf(pointOrigins, 2 * pointCount);
+                            }
+                            double fraction = (budget - currentDist) / weights[arc];
+                            points[pointCount] = pointKey(
+                                    graph.getLatitude(current)
+                                            + fraction * (graph.getLatitude(next) - graph.getLatitude(current)),
+                                    graph.getLongitude(current)
+                                            + fraction * (graph.getLongitude(next) - graph.getLongitude(current)));
+                            pointOrigins[pointCount++] = origin;
+                        }
+                    } else if (!context.isSettled(next) && newDist < context.getDist(next)) {
+                        context.update(next, newDist, origin);
+                        queue.push(next, newDist);
+                    }
+                }
+            }
+            int count = context.getSettledCount();
+            nodes = Arrays.copyOf(nodes, count);
+            origins = Arrays.copyOf(origins, count);
+            double[] distances = new double[count];
+            for (int i = 0; i < count; i++) {
+                distances[i] = context.getDist(nodes[i]);
+            }
+            double[][] hulls = null;
+            if (outlines) {
+                hulls = outlines(graph, sources.length, nodes, origins, points, pointOrigins, pointCount);
+            }
+            return new Isochrone(sources, budget, nodes, distances, origins, hulls);
+        } finally {
+            pool.release(context);
+        }
+    }
+
+    /**
+     * Prints the number of intersections reached and the nearest source of each, one source per line.
+     *
+     * @param isochrone the isochrone to be printed
+     * @param graph     the graph the isochrone was computed on
+     */
+    public static void print(Isochrone isochrone, Graph graph) {
+        int[] counts = new int[isochrone.sources.length];
+        for (int origin : isochrone.origins) {
+            counts[origin]++;
+        }
+        System.out.printf("(Budget: %.2fmi) %d intersections reachable\n", isochrone.budget,
+                isochrone.nodes.length);
+        for (int origin = 0; origin < isochrone.sources.length; origin++) {
+            System.out.printf("[%s] nearest source of %d intersections\n",
+                    graph.getNodeIds().get(isochrone.sources[origin]), counts[origin]);
+        }
+    }
+
+    /**
+     * Private helper method that groups the reached nodes and the points where the budget runs out by source
+     * and returns the convex hull of each group, packed as [lat0, lon0, lat1, lon1, ...] in counterclockwise
+     * order.
+     */
+    private static double[][] outlines(Graph graph, int sourceCount, int[] nodes, int[] origins, long[] points,
+                                       int[] pointOrigins, int pointCount) {
+        int[] firstPoint = new int[sourceCount + 1];
+        for (int origin : origins) {
+            firstPoint[origin + 1]++;
+        }
+        for (int i = 0; i < pointCount; i++) {
+            firstPoint[pointOrigins[i] + 1]++;
+        }
+        for (int origin = 0; origin < sourceCount; origin++) {
+            firstPoint[origin + 1] += firstPoint[origin];
+        }
+        long[] grouped = new long[firstPoint[sourceCount]];
+        int[] next = Arrays.copyOf(firstPoint, sourceCount);
+        for (int i = 0; i < nodes.length; i++) {
+            grouped[next[origins[i]]++] = pointKey(graph.getLatitude(nodes[i]), graph.getLongitude(nodes[i]));
+        }
+        for (int i = 0; i < pointCount; i++) {
+            grouped[next[pointOrigins[i]]++] = points[i];
+        }
+        double[][] hulls = new double[sourceCount][];
+        for (int origin = 0; origin < sourceCount; origin++) {
+            hulls[origin] = hull(grouped, firstPoint[origin], firstPoint[origin + 1]);
+        }
+        return hulls;
+    }
+
+    /**
+     * Private helper method that computes the convex hull of a range of packed points with Andrew's monotone
+     * chain. Sorting the packed points orders them by longitude and then latitude, and the turns are decided
+     * exactly on the quantized coordinates.
+     */
+    private static double[] hull(long[] points, int from, int to) {
+        Arrays.sort(points, from, to);
+        int distinct = from;
+        for (int i = from; i < to; i++) {
+            if (i == from || points[i] != points[distinct - 1]) {
+                points[distinct++] = points[i];
+            }
+        }
+        int count = distinct - from;
+        long[] chain = new long[Math.max(2 * count, 1)];
+        int size = 0;
+        for (int i = 0; i < count; i++) { // lower chain, left to right
+            while (size >= 2 && !turnsLeft(chain[size - 2], chain[size - 1], points[from + i])) {
+                size--;
+            }
+            chain[size++] = points[from + i];
+        }
+        for (int i = count - 2, lower = size + 1; i >= 0; i--) { // upper chain, right to left
+            while (size >= lower && !turnsLeft(chain[size - 2], chain[size - 1], points[from + i])) {
+                size--;
+            }
+            chain[size++] = points[from + i];
+        }
+        size = Math.max(1, size - 1); // the last point repeats the first
+        double[] outline = new double[count == 0 ? 0 : 2 * size];
+        for (int i = 0; 2 * i < outline.length; i++) {
+            outline[2 * i] = pointY(chain[i]) / QUANTUM;
+            outline[2 * i + 1] = pointX(chain[i]) / QUANTUM;
+        }
+        return outline;
+    }
+
+    /**
+     * Private helper method that tells whether the path a, b, c turns counterclockwise.
+     */
+    private static boolean turnsLeft(long a, long b, long c) {
+        long abX = pointX(b) - pointX(a);
+        long abY = pointY(b) - pointY(a);
+        long acX = pointX(c) - pointX(a);
+        long acY = pointY(c) - pointY(a);
+        return abX * acY - abY * acX > 0;
+    }
+
+    /**
+     * Private helper method that quantizes a coordinate and packs it into a long that sorts by longitude and
+     * then latitude.
+     */
+    private static long pointKey(double lat, double lon) {
+        int x = (int) Math.round(lon * QUANTUM);
+        int y = (int) Math.round(lat * QUANTUM);
+        return (long) x << 32 | (y ^ Integer.MIN_VALUE) & 0xffffffffL;
+    }
+
+    /**
+     * Private helper method that returns the quantized longitude of a packed point.
+     */
+    private static int pointX(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Private helper method that returns the quantized latitude of a packed point.
+     */
+    private static int pointY(long key) {
+        return (int) key ^ Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class LandmarkHeuristic implements Heuristic {
+    public static final int DEFAULT_COUNT = 16; // number of landmarks used when none is given
+    private final int[] landmarks; // index of each landmark node
+    private volatile float[] distances; // distance of each node from each landmark, packed as [n0l0, n0l1, ..., n1l0, ...]
+    private final double slack; // largest error of a difference of two stored distances, subtracted from bounds
+
+    // getters and setters
+    public int[] getLandmarks() {
+        return landmarks;
+    }
+
+    public int getCount() {
+        return landmarks.length;
+    }
+
+    private LandmarkHeuristic(int[] landmarks, float[] distances, double slack) {
+        this.landmarks = landmarks;
+        this.distances = distances;
+        this.slack = slack;
+    }
+
+    /**
+     * Selects landmarks and computes the distance of every node from each of them. By the triangle inequality,
+     * |d(L, t) - d(L, v)| is a lower bound on d(v, t) for every landmark L, and a landmark behind the target
+     * makes it nearly exact. Selecting a landmark only needs the tables of the landmarks before it, so the
+     * tables left once selection ends are computed in parallel, one Dijkstra run per landmark.
+     * Distances are stored as floats, half the size of doubles.
+     *
+     * @param pool      the query contexts the Dijkstra runs use, which also give the graph
+     * @param count     the number of landmarks, at most the number of nodes
+     * @param selection how the landmarks are chosen
+     * @return the new heuristic
+     */
+    public static LandmarkHeuristic build(QueryContextPool pool, int count, LandmarkSelection selection) {
+        long start = System.nanoTime();
+        Graph graph = pool.getGraph();
+        int nodeCount = graph.getNodeCount();
+        count = Math.min(count, nodeCount);
+        int[] landmarks = new int[count];
+        float[][] columns = new float[count][];
+        Random random = new Random(0);
+        QueryContext context = pool.acquire();
+        try {
+            for (int i = 0; i < count; i++) {
+                landmarks[i] = switch (selection) {
+                    case FARTHEST -> selectFarthest(graph, landmarks, i, random, context);
+                    case AVOID -> selectAvoiding(graph, landmarks, columns, i, random, context);
+                };
+            }
+        } finally {
+            pool.release(context);
+        }
+        IntStream.range(0, count).parallel().filter(i -> columns[i] == null).forEach(i -> {
+            QueryContext worker = pool.acquire();
+            try {
+                columns[i] = column(graph, landmarks[i], worker);
+            } finally {
+                pool.release(worker);
+            }
+        });
+
+        float[] distances = new float[nodeCount * count];
+        IntStream.range(0, nodeCount).parallel().forEach(node -> {
+            for (int i = 0; i < columns.length; i++) {
+                distances[node * columns.length + i] = columns[i][node];
+            }
+        });
+        float longest = 0;
+        for (float distance : distances) {
+            if (distance != Float.POSITIVE_INFINITY) {
+                longest = Math.max(longest, distance);
+            }
+        }
+        System.err.printf("Selected %d landmarks (%s) in %.2fs\n", count, selection.name().toLowerCase(),
+                (System.nanoTime() - start) / 1e9);
+        // each stored distance is off by at most half an ulp, so a difference of two by at most one
+        return new LandmarkHeuristic(landmarks, distances, Math.ulp(longest));
+    }
+
+    /**
+     * Returns a heuristic bound to the current distance tables, which later updates replace but never change.
+     */
+    @Override
+    public Heuristic snapshot() {
+        return new LandmarkHeuristic(this.landmarks, this.distances, this.slack);
+    }
+
+    /**
+     * Brings the distance tables up to date before the graph's edge weights are replaced, without recomputing
+     * them. Longer edges need no repair: the tables then only need to satisfy |d(L, u) - d(L, v)| <= w(u, v)
+     * on every edge to give admissible and consistent bounds, and raising weights keeps that true. Shorter
+     * edges are repaired like one Dijkstra run per landmark that starts from the shortened edges and only
+     * lowers distances that got shorter, so the work is limited to the area the change reaches. Landmarks are
+     * repaired in parallel into a copy of the tables, which replaces the old ones at once. Since distances
+     * only go down, the new tables also bound the old weights, so searches still using the old weights stay
+     * correct; call this before Graph.setEdgeWeights.
+     *
+     * @param pool    the query contexts the repairs use, which also give the graph and its current weights
+     * @param edges   the indices of the edges whose weights change
+     * @param weights the new weight of every edge
+     * @return the number of stored distances that were lowered
+     */
+    public long update(QueryContextPool pool, int[] edges, double[] weights) {
+        Graph graph = pool.getGraph();
+        double[] oldWeights = graph.getEdgeWeights();
+        int[] shorter = Arrays.stream(edges).filter(edge -> weights[edge] < oldWeights[edge]).distinct().toArray();
+        if (shorter.length == 0) {
+            return 0;
+        }
+        float[] updated = this.distances.clone();
+        int count = this.landmarks.length;
+        long lowered = IntStream.range(0, count).parallel().mapToLong(i -> {
+            QueryContext context = pool.acquire();
+            try {
+                return lower(graph, weights, shorter, updated, count, i, context);
+            } finally {
+                pool.release(context);
+            }
+        }).sum();
+        this.distances = updated;
+        return lowered;
+    }
+
+    /**
+     * Private helper method that lowers the distances of one landmark after some edges got shorter, settling
+     * nodes in order of their new distance and only ever going past nodes whose distance went down.
+     *
+     * @return the number of distances lowered
+     */
+    private static long lower(Graph graph, double[] weights, int[] shorter, float[] table, int count, int landmark,
+                              QueryContext context) {
+        context.begin();
+        NodeQueue queue = context.getQueue();
+        for (int edge : shorter) {
+            int a = graph.getEdgeA(edge);
+            int b = graph.getEdgeB(edge);
+            lowerTo(b, table[a * count + landmark] + weights[edge], table, count, landmark, context, queue);
+            lowerTo(a, table[b * count + landmark] + weights[edge], table, count, landmark, context, queue);
+        }
+        long lowered = 0;
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            context.settle(current);
+            lowered++;
+            double currentDist = table[current * count + landmark];
+            for (int arc = graph.getFirstArc(current); arc < graph.getFirstArc(current + 1); arc++) {
+                int next = graph.getArcTarget(arc);
+                if (!context.isSettled(next)) {
+                    lowerTo(next, currentDist + weights[graph.getArcEdge(arc)], table, count, landmark, context, queue);
+                }
+            }
+        }
+        return lowered;
+    }
+
+    /**
+     * Private helper method that stores a distance of a node from a landmark if it is shorter than the stored
+     * one, and queues the node so its neighbours are checked too.
+     */
+    private static void lowerTo(int node, double distance, float[] table, int count, int landmark,
+                                QueryContext context, NodeQueue queue) {
+        float rounded = (float) distance;
+        if (rounded < table[node * count + landmark]) {
+            table[node * count + landmark] = rounded;
+            context.update(node, distance, -1);
+            queue.push(node, distance);
+        }
+    }
+
+    /**
+     * Returns the largest landmark bound on the distance between two nodes. Landmarks that cannot reach one
+     * of the nodes give no bound. The bound is lowered by the float rounding slack, which keeps it admissible;
+     * it is consistent to within twice the slack, a few millionths of a mile on city-sized maps.
+     */
+    @Override
+    public double estimate(int node, int target) {
+        int count = landmarks.length;
+        int nodeBase = node * count;
+        int targetBase = target * count;
+        double best = 0;
+        for (int i = 0; i < count; i++) {
+            float fromNode = distances[nodeBase + i];
+            float fromTarget = distances[targetBase + i];
+            if (fromNode != Float.POSITIVE_INFINITY && fromTarget != Float.POSITIVE_INFINITY) {
+                best = Math.max(best, Math.abs((double) fromTarget - fromNode));
+            }
+        }
+        return Math.max(0, best - slack);
+    }
+
+    /**
+     * Private helper method that picks the node farthest from the landmarks chosen so far, found with one
+     * search from all of them at once. The first landmark is the node farthest from a random node.
+     */
+    private static int selectFarthest(Graph graph, int[] landmarks, int chosen, Random random, QueryContext context) {
+        if (chosen == 0) {
+            int[] order = search(graph, new int[]{random.nextInt(graph.getNodeCount())}, 1, context);
+            return order[order.length - 1];
+        }
+        int[] order = search(graph, landmarks, chosen, context);
+        int farthest = order[order.length - 1];
+        return context.getDist(farthest) > 0 ? farthest : randomFreeNode(graph, landmarks, chosen, random);
+    }
+
+    /**
+     * Private helper method that picks a landmark with the avoid heuristic: it grows a shortest path tree from
+     * a random root, weighs each node by how much the current landmarks underestimate its distance from the
+     * root, and descends from the root into the heaviest subtree that holds no landmark. The landmark is the
+     * leaf it reaches, which lies behind the region the current bounds cover worst. The tables of the landmarks
+     * chosen so far are computed here, because the weights need them.
+     */
+    private static int selectAvoiding(Graph graph, int[] landmarks, float[][] columns, int chosen, Random random,
+                                      QueryContext context) {
+        for (int i = 0; i < chosen; i++) {
+            if (columns[i] == null) {
+                columns[i] = column(graph, landmarks[i], context);
+            }
+        }
+        int root = random.nextInt(graph.getNodeCount());
+        int[] order = search(graph, new int[]{root}, 1, context);
+        int nodeCount = graph.getNodeCount();
+        double[] sizes = new double[nodeCount];
+        int[] heaviestChild = new int[nodeCount];
+        boolean[] covered = new boolean[nodeCount];
+        for (int i = 0; i < chosen; i++) {
+            covered[landmarks[i]] = true;
+        }
+        Arrays.fill(heaviestChild, -1);
+        // children are settled after their parent, so walking the order backwards finishes every subtree first
+        for (int k = order.length - 1; k >= 0; k--) {
+            int node = order[k];
+            double bound = 0;
+            for (int i = 0; i < chosen; i++) {
+                if (columns[i][root] != Float.POSITIVE_INFINITY) {
+                    bound = Math.max(bound, Math.abs((double) columns[i][root] - columns[i][node]));
+                }
+            }
+            sizes[node] = covered[node] ? 0 : sizes[node] + Math.max(0, context.getDist(node) - bound);
+            int edge = context.getPrevEdge(node);
+            if (edge != -1) {
+                int parent = graph.getOtherEnd(edge, node);
+                if (covered[node]) {
+                    covered[parent] = true;
+                } else {
+                    sizes[parent] += sizes[node];
+                    if (heaviestChild[parent] == -1 || sizes[node] > sizes[heaviestChild[parent]]) {
+                        heaviestChild[parent] = node;
+                    }
+                }
+            }
+        }
+        if (covered[root] && sizes[root] == 0) {
+            return selectFarthest(graph, landmarks, chosen, random, context);
+        }
+        int node = root;
+        while (heaviestChild[node] != -1 && !covered[heaviestChild[node]] && sizes[heaviestChild[node]] > 0) {
+            node = heaviestChild[node];
+        }
+        return node;
+    }
+
+    /**
+     * Private helper method that picks a random node that is not a landmark yet, for graphs where every node
+     * is already at distance 0 from a landmark.
+     */
+    private static int randomFreeNode(Graph graph, int[] landmarks, int chosen, Random random) {
+        while (true) {
+            int node = random.nextInt(graph.getNodeCount());
+            if (Arrays.stream(landmarks, 0, chosen).noneMatch(landmark -> landmark == node)) {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Private helper method that computes the distance of every node from a landmark, infinite for nodes it
+     * cannot reach.
+     */
+    private static float[] column(Graph graph, int landmark, QueryContext context) {
+        search(graph, new int[]{landmark}, 1, context);
+        float[] column = new float[graph.getNodeCount()];
+        for (int node = 0; node < column.length; node++) {
+            column[node] = (float) context.getDist(node);
+        }
+        return column;
+    }
+
+    /**
+     * Private helper method that runs Dijkstra's algorithm from several sources at once until every reachable
+     * node is settled, leaving the distances and shortest path tree in the context.
+     *
+     * @return the nodes in the order they were settled, nearest first
+     */
+    private static int[] search(Graph graph, int[] sources, int sourceCount, QueryContext context) {
+        double[] weights = graph.getArcWeights();
+        int[] order = new int[graph.getNodeCount()];
+        context.begin();
+        NodeQueue queue = context.getQueue();
+        for (int i = 0; i < sourceCount; i++) {
+            context.update(sources[i], 0, -1);
+            queue.push(sources[i], 0);
+        }
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            order[context.getSettledCount()] = current;
+            context.settle(current);
+            double currentDist = context.getDist(current);
+            for (int arc = graph.getFirstArc(current); arc < graph.getFirstArc(current + 1); arc++) {
+                int next = graph.getArcTarget(arc);
+                if (context.isSettled(next)) {
+                    continue;
+                }
+                double newDist = currentDist + weights[arc];
+                if (newDist < context.getDist(next)) {
+                    context.update(next, newDist, graph.getArcEdge(arc));
+                    queue.push(next, newDist);
+                }
+            }
+        }
+        return Arrays.copyOf(order, context.getSettledCount());
+    }
+}
@@ -0,0 +1,19 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public enum LandmarkSelection {
+    FARTHEST, // each landmark is the node farthest from the landmarks chosen before it
+    AVOID; // each landmark covers the region of a shortest path tree where the current bounds are weakest
+
+    /**
+     * Finds the landmark selection named on the command line.
+     *
+     * @param name the name of the selection, case-insensitive
+     * @return the matching landmark selection
+     * @throws IllegalArgumentException if no selection has that name
+     */
+    public static LandmarkSelection fromName(String name) {
+        return LandmarkSelection.valueOf(name.toUpperCase());
+    }
+}
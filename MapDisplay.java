@@ -5,31 +5,52 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-
-public class MapDisplay extends JPanel implements MouseListener, MouseMotionListener, ComponentListener {
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+public class MapDisplay extends JPanel implements MouseListener, MouseMotionListener, MouseWheelListener,
+        ComponentListener {
     // Variables for the frame and the map
     private final JFrame frame; // the frame that holds the JPanel
     private int windowHeight; // the height of the window
     private int windowWidth; // the width of the window
     private final StreetMap map; // the street map
 
-    // Variables for the quadtree and scaling factors
-    private QuadTree screenQuadrants; // the quadtree that holds nodes visible on screen
-    private double latScaleFactor; // the scaling factor for latitude
-    private double lonScaleFactor; // the scaling factor for longitude
+    // Variables for the view
+    private View view; // the view the window currently shows
+
+    // Variables for panning and zooming
+    private final TilePyramid tiles; // the street network drawn in tiles at every zoom level
+    private int level = -1; // the zoom level shown, -1 until the map is first fit to the window
+    private int originX; // the pixel column, at the zoom level, of the left edge of the window
+    private int originY; // the pixel row, at the zoom level, of the top edge of the window
+    private Point panStart; // where the mouse was when the current pan started or last moved, null if not panning
 
     // Variables for tracking the first and second nodes and mouse events
     private Node firstNode; // the first node clicked
     private Node secondNode; // the second node clicked
     private boolean isDragging; // whether the mouse is currently dragging
 
+    // Variables for computing routes off the event dispatch thread
+    private final ExecutorService routeWorker; // the thread that computes routes
+    private final AtomicReference<RouteRequest> pendingRoute; // the latest route not started yet, null if none
+    private final AtomicLong routeGeneration; // number of the latest route request, results of older ones are dropped
+    private ResumableDijkstra dragSearch; // search from the first node, resumed for each target while dragging
+
     // Constants for screen buffer and colors
-    private int SIDE_SCREEN_BUFFER; // the buffer on the sides of the screen
-    private int TOP_SCREEN_BUFFER; // the buffer at the top of the screen
+    private static final double FIT_MARGIN = 0.85; // share of the window the whole map fills when first shown
+    private static final double LABEL_TOP = 0.02; // share of the window height above the labels
     private static final Color BACKGROUND_COLOR = new Color(245, 240, 228); // the background color
     private static final Color EDGE_COLOR = Color.BLACK; // the color of edges
     private static final Color LABEL_COLOR = Color.BLACK; // the color of labels
     private static final Color PATH_COLOR = Color.RED; // The color of the path
+    private static final Color ALTERNATIVE_COLOR = new Color(235, 140, 130); // the color of alternative routes
+    private static final Color ISOCHRONE_COLOR = new Color(40, 110, 200); // the color of isochrone outlines
+    private static final Color ISOCHRONE_FILL = new Color(40, 110, 200, 48); // the see-through isochrone fill
     private static final Color NODE_COLOR = new Color(138, 23, 41); // he color of nodes
 
     // getters and setters
@@ -49,14 +70,6 @@ public class MapDisplay extends JPanel implements MouseListener, MouseMotionList
         this.secondNode = secondNode;
     }
 
-    // Setter for the screen quadrants, and adding nodes to it
-    public void setScreenQuadrants(QuadTree screenQuadrants) {
-        this.screenQuadrants = screenQuadrants;
-        for (Node node : map.getGraph().getNodes().values()) {
-            this.screenQuadrants.insert(node);
-        }
-    }
-
     /**
      * Constructor for the MapDisplay class.
      *
@@ -64,6 +77,15 @@ public class MapDisplay extends JPanel implements MouseListener, MouseMotionList
      */
     public MapDisplay(StreetMap map) {
         this.map = map;
+        this.tiles = new TilePyramid(map, BACKGROUND_COLOR, EDGE_COLOR, TilePyramid.DEFAULT_CACHE_BYTES,
+                this::repaint);
+        this.routeWorker = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "route-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingRoute = new AtomicReference<>();
+        this.routeGeneration = new AtomicLong();
         frame = new JFrame("Street Mapping");
         frame.setPreferredSize(new Dimension(1280, 720));
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
@@ -74,28 +96,37 @@ public class MapDisplay extends JPanel implements MouseListener, MouseMotionList
         frame.setResizable(true);
         addMouseListener(this);
         addMouseMotionListener(this);
+        addMouseWheelListener(this);
         addComponentListener(this);
         setFocusable(true);
         repaint();
     }
 
     /**
-     * Draws the graph and labels on the panel using the given Graphics2D object.
+     * Draws the overlay on the panel using the given Graphics2D object: the highlighted path, the markers and
+     * the labels. The overlay only holds a few shapes, so it is drawn on every paint above the tiles.
      *
-     * @param g the Graphics2D object used to draw the graph
+     * @param g the Graphics2D object used to draw the overlay
      */
-    public void drawGraph(Graphics2D g) {
-        // draw edges
-        g.setColor(EDGE_COLOR);
-        for (Edge edge : map.getGraph().getEdges().values()) {
-            this.drawEdge(g, edge);
+    public void drawOverlay(Graphics2D g) {
+        // draw the isochrone under everything else
+        if (map.getIsochrone() != null) {
+            this.drawIsochrone(g, map.getIsochrone());
+        }
+
+        // draw the alternatives under the highlighted path
+        g.setColor(ALTERNATIVE_COLOR);
+        g.setStroke(new BasicStroke(3));
+        for (Path alternative : map.getAlternatives()) {
+            for (int edge : alternative.getEdgeIndices()) {
+                this.drawEdge(g, edge);
+            }
         }
 
         // draw highlighted path
         g.setColor(PATH_COLOR);
-        g.setStroke(new BasicStroke(3));
-        if (map.getPath() != null && map.getPath().getNodes() != null) {
-            for (Edge edge : map.getPath().getEdgesInPath()) {
+        if (map.getPath() != null && map.getPath().getNodeIndices() != null) {
+            for (int edge : map.getPath().getEdgeIndices()) {
                 this.drawEdge(g, edge);
             }
         }
@@ -103,14 +134,10 @@ public class MapDisplay extends JPanel implements MouseListener, MouseMotionList
         // draw nodes
         g.setColor(NODE_COLOR);
         if (firstNode != null) {
-            g.fillOval(firstNode.getScaledX() - 5, firstNode.getScaledY() - 15, 10, 10);
-            g.fillPolygon(new int[]{firstNode.getScaledX(), firstNode.getScaledX() + 5, firstNode.getScaledX() - 5},
-                    new int[]{firstNode.getScaledY(), firstNode.getScaledY() - 10, firstNode.getScaledY() - 10}, 3);
+            this.drawMarker(g, firstNode);
         }
         if (secondNode != null) {
-            g.fillOval(secondNode.getScaledX() - 5, secondNode.getScaledY() - 15, 10, 10);
-            g.fillPolygon(new int[]{secondNode.getScaledX(), secondNode.getScaledX() + 5, secondNode.getScaledX() - 5},
-                    new int[]{secondNode.getScaledY(), secondNode.getScaledY() - 10, secondNode.getScaledY() - 10}, 3);
+            this.drawMarker(g, secondNode);
         }
 
         // draw labels
@@ -134,29 +161,69 @@ public class MapDisplay extends JPanel implements MouseListener, MouseMotionList
                     secondNode.getId()));
             int x = (this.windowWidth - metrics.stringWidth(label)) / 2;
             int y = metrics.getAscent();
-            g.drawString(label, x, (int) (y + TOP_SCREEN_BUFFER * 0.3));
+            g.drawString(label, x, (int) (y + this.windowHeight * LABEL_TOP));
         } else if (firstNode != null) {
             String label2 = ("[%s]".formatted(firstNode.getId()));
             int x = (this.windowWidth - metrics.stringWidth(label2)) / 2;
             int y = metrics.getAscent();
-            g.drawString(label2, x, (int) (y + TOP_SCREEN_BUFFER * 0.3));
+            g.drawString(label2, x, (int) (y + this.windowHeight * LABEL_TOP));
+        }
+    }
+
+    /**
+     * Draws the outline of the area each source of an isochrone is nearest to, filled with a see-through color,
+     * and a marker on each source.
+     *
+     * @param g         the Graphics2D object used for drawing
+     * @param isochrone the isochrone to draw
+     */
+    public void drawIsochrone(Graphics2D g, Isochrone isochrone) {
+        g.setStroke(new BasicStroke(2));
+        if (isochrone.getOutlines() != null) {
+            for (double[] outline : isochrone.getOutlines()) {
+                int[] xs = new int[outline.length / 2];
+                int[] ys = new int[outline.length / 2];
+                for (int i = 0; i < xs.length; i++) {
+                    xs[i] = this.scaleLon(outline[2 * i + 1]);
+                    ys[i] = this.scaleLat(outline[2 * i]);
+                }
+                g.setColor(ISOCHRONE_FILL);
+                g.fillPolygon(xs, ys, xs.length);
+                g.setColor(ISOCHRONE_COLOR);
+                g.drawPolygon(xs, ys, xs.length);
+            }
+        }
+        g.setColor(ISOCHRONE_COLOR);
+        for (int source : isochrone.getSources()) {
+            this.drawMarker(g, map.getGraph().getNode(source));
         }
     }
 
+    /**
+     * Draws a pin marker above a node on the screen.
+     *
+     * @param g    the Graphics2D object used for drawing
+     * @param node the node to mark
+     */
+    public void drawMarker(Graphics2D g, Node node) {
+        int x = this.scaleLon(node.getLongitude());
+        int y = this.scaleLat(node.getLatitude());
+        g.fillOval(x - 5, y - 15, 10, 10);
+        g.fillPolygon(new int[]{x, x + 5, x - 5}, new int[]{y, y - 10, y - 10}, 3);
+    }
+
     /**
      * Draws an edge between two nodes on the screen.
      *
      * @param g    the Graphics2D object used for drawing
-     * @param edge the Edge object representing the edge to draw
+     * @param edge the index of the edge to draw
      */
-    public void drawEdge(Graphics2D g, Edge edge) {
-        Node start = edge.getA();
-        Node end = edge.getB();
-        start.setScaledX(this.scaleLon(start.getLongitude()));
-        start.setScaledY(this.scaleLat(start.getLatitude()));
-        end.setScaledX(this.scaleLon(end.getLongitude()));
-        end.setScaledY(this.scaleLat(end.getLatitude()));
-        g.drawLine(start.getScaledX(), start.getScaledY(), end.getScaledX(), end.getScaledY());
+    public void drawEdge(Graphics2D g, int edge) {
+        Graph graph = map.getGraph();
+        int start = graph.getEdgeA(edge);
+        int end = graph.getEdgeB(edge);
+        g.drawLine(this.scaleLon(graph.getLongitude(start)), this.scaleLat(graph.getLatitude(start)),
+                this.scaleLon(graph.getLongitude(end)), this.scaleLat(graph.getLatitude(end)));
     }
 
     /**
@@ -166,9 +233,7 @@ public class MapDisplay extends JPanel implements MouseListener, MouseMotionList
      * @return the scaled Y coordinate of the point on the screen
      */
     public int scaleLat(double lat) {
-        double scaledLatitude = (lat - map.getBottomBound()) * this.latScaleFactor;
-        // Flip the Y-axis
-        return (int) (this.windowHeight - scaledLatitude - TOP_SCREEN_BUFFER * 1.2);
+        return this.view.scaleLat(lat);
     }
 
     /**
@@ -178,39 +243,186 @@ public class MapDisplay extends JPanel implements MouseListener, MouseMotionList
      * @return the scaled X coordinate of the point on the screen
      */
     public int scaleLon(double lon) {
-        return (int) ((lon - map.getLeftBound()) * this.lonScaleFactor) + SIDE_SCREEN_BUFFER;
+        return this.view.scaleLon(lon);
     }
 
     /**
-     * This method updates the map display and paints the graph.
+     * Converts a position on the screen back to the latitude it shows.
+     *
+     * @param y the Y coordinate on the screen
+     * @return the latitude drawn at that height
+     */
+    public double unscaleLat(int y) {
+        return this.view.unscaleLat(y);
+    }
+
+    /**
+     * Converts a position on the screen back to the longitude it shows.
+     *
+     * @param x the X coordinate on the screen
+     * @return the longitude drawn at that position
+     */
+    public double unscaleLon(int x) {
+        return this.view.unscaleLon(x);
+    }
+
+    /**
+     * This method updates the map display and paints the graph. The street network comes from the cached
+     * tiles of the zoom level, which worker threads draw as they are needed, so painting never waits for it.
      *
      * @param g the graphics context to use for painting
      */
     public void paint(Graphics g) {
         super.paint(g);
+        this.updateScale();
 
+        // Cast the graphics object to Graphics2D to enable advanced drawing features
+        Graphics2D g2 = (Graphics2D) g;
+        tiles.draw(g2, level, originX, originY, windowWidth, windowHeight);
+        this.drawOverlay(g2);
+    }
+
+
+    /**
+     * Updates the view to the current size of the frame. The first time, the map is fit to the window at the
+     * deepest zoom level it fits in; afterwards a resize keeps the centre of the window where it is.
+     */
+    public void updateScale() {
         // Get the height and width of the frame where the panel is added
+        int previousWidth = this.windowWidth;
+        int previousHeight = this.windowHeight;
         this.windowHeight = frame.getHeight();
         this.windowWidth = frame.getWidth();
 
-        // Calculate the scaling factors for latitude and longitude
-        this.latScaleFactor = windowHeight * 0.85 / (map.getTopBound() - map.getBottomBound());
-        this.lonScaleFactor = windowWidth * 0.85 / (map.getRightBound() - map.getLeftBound());
-        double scaleFactor = Math.min(latScaleFactor, lonScaleFactor);
-        this.latScaleFactor = scaleFactor;
-        this.lonScaleFactor = scaleFactor;
+        // Fit the map at the zoom level nearest below the fitting scale, or keep the view centred on resize
+        if (this.level == -1) {
+            double scaleFactor = Math.min(windowHeight * FIT_MARGIN / (map.getTopBound() - map.getBottomBound()),
+                    windowWidth * FIT_MARGIN / (map.getRightBound() - map.getLeftBound()));
+            double fit = Math.floor(Math.log(scaleFactor / tiles.getScale(0)) / Math.log(2));
+            this.level = (int) Math.max(0, Math.min(TilePyramid.MAX_LEVEL, fit));
+            double scale = tiles.getScale(this.level);
+            this.originX = (int) Math.round(((map.getLeftBound() + map.getRightBound()) / 2 - tiles.getWest())
+                    * scale - this.windowWidth / 2.0);
+            this.originY = (int) Math.round((tiles.getNorth() - (map.getTopBound() + map.getBottomBound()) / 2)
+                    * scale - this.windowHeight / 2.0);
+        } else {
+            this.originX += (previousWidth - this.windowWidth) / 2;
+            this.originY += (previousHeight - this.windowHeight) / 2;
+        }
+        double scale = tiles.getScale(this.level);
+        this.view = new View(this.windowWidth, this.windowHeight, scale, tiles.getWest() + this.originX / scale,
+                tiles.getNorth() - this.originY / scale);
+    }
+
+    /**
+     * Zooms in or out by whole levels of the tile pyramid, keeping the point under the mouse in place.
+     *
+     * @param levels the number of levels to zoom in, negative to zoom out
+     * @param x      the x-coordinate of the point kept in place
+     * @param y      the y-coordinate of the point kept in place
+     */
+    public void zoom(int levels, int x, int y) {
+        int newLevel = Math.max(0, Math.min(TilePyramid.MAX_LEVEL, this.level + levels));
+        if (this.level == -1 || newLevel == this.level) {
+            return;
+        }
+        double factor = Math.pow(2, newLevel - this.level);
+        this.originX = (int) Math.round((this.originX + x) * factor) - x;
+        this.originY = (int) Math.round((this.originY + y) * factor) - y;
+        this.level = newLevel;
+        repaint();
+    }
+
+    /**
+     * Finds the node nearest to a screen position, by converting the position to a coordinate and looking it
+     * up in the map's spatial index, which does not depend on the window size.
+     *
+     * @param x the x-coordinate of the position
+     * @param y the y-coordinate of the position
+     * @return the nearest node, or null if the map has no nodes
+     */
+    private Node findNearest(int x, int y) {
+        this.updateScale();
+        int nearest = map.getSpatialIndex().nearest(this.unscaleLat(y), this.unscaleLon(x));
+        return nearest == -1 ? null : map.getGraph().getNode(nearest);
+    }
 
-        // Calculate the width and height of the map using the scaling factors
-        int mapWidth = (int) ((map.getRightBound() - map.getLeftBound()) * scaleFactor);
-        int mapHeight = (int) ((map.getTopBound() - map.getBottomBound()) * this.latScaleFactor);
+    /**
+     * Asks for the path from the first node to the second node to be computed on the route worker. The
+     * request supersedes every earlier one: requests that have not started yet are dropped, so a burst of drag
+     * events only computes the last target, a search in progress for the dragged target stops early, and
+     * results that arrive after a newer request are never shown.
+     *
+     * @param dragging whether the second node is being dragged, which resumes the search from the first node
+     * @param print    whether to print the path once it is found
+     */
+    private void requestRoute(boolean dragging, boolean print) {
+        if (firstNode == null || secondNode == null) {
+            return;
+        }
+        RouteRequest request = new RouteRequest(firstNode, secondNode, dragging, print,
+                routeGeneration.incrementAndGet());
+        if (pendingRoute.getAndSet(request) == null) {
+            routeWorker.execute(this::computeRoutes);
+        }
+    }
 
-        // Calculate the buffer space on the left and top of the screen to center the map
-        SIDE_SCREEN_BUFFER = (this.windowWidth - mapWidth) / 2;
-        TOP_SCREEN_BUFFER = (this.windowHeight - mapHeight) / 2;
+    /**
+     * Private helper method run by the route worker that computes the latest route request until none is left,
+     * handing each path still wanted to the event dispatch thread.
+     */
+    private void computeRoutes() {
+        RouteRequest request;
+        while ((request = pendingRoute.getAndSet(null)) != null) {
+            long generation = request.generation;
+            BooleanSupplier stale = () -> routeGeneration.get() != generation;
+            List<Path> routes = List.of(); // the shortest path first, the alternatives are filtered against it
+            if (!request.dragging && map.getAlternativeCount() > 1) {
+                routes = map.findAlternatives(request.source, request.target);
+            }
+            Path path = !routes.isEmpty() ? routes.get(0)
+                    : request.dragging ? this.findDragPath(request.source, request.target, stale)
+                    : map.findPath(request.source, request.target);
+            if (path == null || stale.getAsBoolean()) {
+                continue;
+            }
+            List<Path> alternatives = routes.isEmpty() ? routes : routes.subList(1, routes.size());
+            boolean print = request.print;
+            SwingUtilities.invokeLater(() -> {
+                if (!stale.getAsBoolean()) {
+                    map.setPath(path);
+                    map.setAlternatives(alternatives);
+                    if (print) {
+                        Path.print(path);
+                        for (Path alternative : alternatives) {
+                            System.out.print("Alternative ");
+                            Path.print(alternative);
+                        }
+                    }
+                    repaint();
+                }
+            });
+        }
+    }
 
-        // Cast the graphics object to Graphics2D to enable advanced drawing features
-        Graphics2D g2 = (Graphics2D) g;
-        this.drawGraph(g2);
+    /**
+     * Private helper method that finds the path to the dragged second node. The search from the first node is
+     * kept between drag events and only settles further when the second node moves outside what it explored.
+     * It starts over when the first node or the edge weights change, and only holds the nodes it explored.
+     * A second node in another connected component gets no path without searching. Only the route worker
+     * uses it.
+     *
+     * @return the path, or null if the request became stale before the search reached the target
+     */
+    private Path findDragPath(Node source, Node target, BooleanSupplier stale) {
+        if (!map.getComponents().isConnected(source.getIndex(), target.getIndex())) {
+            return Path.none(source, target);
+        }
+        if (dragSearch == null || !dragSearch.getSource().equals(source)
+                || dragSearch.getWeightVersion() != source.getGraph().getWeightVersion()) {
+            dragSearch = new ResumableDijkstra(source, map.getContextPool().getQueueType());
+        }
+        return dragSearch.pathTo(target, stale);
     }
 
     @Override
@@ -220,31 +432,38 @@ public class MapDisplay extends JPanel implements MouseListener, MouseMotionList
 
     @Override
     public void mousePressed(MouseEvent e) {
-        // If right click, reset Dijkstra and set new source on mouse
+        // Dragging with the middle button, or with any button while holding shift, pans the map
+        if (SwingUtilities.isMiddleMouseButton(e) || e.isShiftDown()) {
+            panStart = e.getPoint();
+            return;
+        }
+        // If right click, set new source on mouse, the path is searched once a target is chosen
         if (firstNode == null || e.getButton() == 1) {
             secondNode = null;
             map.setPath(null);
-            firstNode = screenQuadrants.findNearest(e.getX(), e.getY());
-            map.getGraph().resetNodes();
-            Graph.dijkstra(firstNode);
+            map.setAlternatives(List.of());
+            routeGeneration.incrementAndGet(); // drops any route still being computed to the old source
+            firstNode = this.findNearest(e.getX(), e.getY());
             repaint();
         }
-        // If left click, reset target and set new Path
+        // If left click, reset target and ask for the new Path
         else {
-            secondNode = screenQuadrants.findNearest(e.getX(), e.getY());
-            map.setPath(Graph.shortestPath(firstNode, secondNode));
-            Path.print(map.getPath());
+            secondNode = this.findNearest(e.getX(), e.getY());
+            this.requestRoute(false, true);
             repaint();
         }
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
+        if (panStart != null) {
+            panStart = null;
+            return;
+        }
         // Change target and path if released after dragging
         if (isDragging) {
-            secondNode = screenQuadrants.findNearest(e.getX(), e.getY());
-            map.setPath(Graph.shortestPath(firstNode, secondNode));
-            Path.print(map.getPath());
+            secondNode = this.findNearest(e.getX(), e.getY());
+            this.requestRoute(true, true);
             repaint();
             isDragging = false;
         }
@@ -262,9 +481,16 @@ public class MapDisplay extends JPanel implements MouseListener, MouseMotionList
 
     @Override
     public void mouseDragged(MouseEvent e) {
+        if (panStart != null) {
+            originX -= e.getX() - panStart.x;
+            originY -= e.getY() - panStart.y;
+            panStart = e.getPoint();
+            repaint();
+            return;
+        }
         // Keep changing the path target while dragging
-        secondNode = screenQuadrants.findNearest(e.getX(), e.getY());
-        map.setPath(Graph.shortestPath(firstNode, secondNode));
+        secondNode = this.findNearest(e.getX(), e.getY());
+        this.requestRoute(true, false);
         isDragging = true;
         repaint();
     }
@@ -274,10 +500,16 @@ public class MapDisplay extends JPanel implements MouseListener, MouseMotionList
 
     }
 
+    @Override
+    public void mouseWheelMoved(MouseWheelEvent e) {
+        // Scrolling up zooms in around the mouse, scrolling down zooms out
+        this.zoom(-e.getWheelRotation(), e.getX(), e.getY());
+    }
+
     @Override
     public void componentResized(ComponentEvent e) {
-        // Re-do the quad tree if the screen is resized
-        this.setScreenQuadrants(new QuadTree(new Rectangle(this.windowWidth, this.windowHeight)));
+        // Only the drawing depends on the window size, the tiles in view are drawn again for the new view
+        repaint();
     }
 
     @Override
@@ -294,4 +526,59 @@ public class MapDisplay extends JPanel implements MouseListener, MouseMotionList
     public void componentHidden(ComponentEvent e) {
 
     }
+
+    /**
+     * A route to compute on the route worker.
+     */
+    private static class RouteRequest {
+        private final Node source; // the source node of the route
+        private final Node target; // the target node of the route
+        private final boolean dragging; // whether the target is being dragged
+        private final boolean print; // whether to print the path once it is found
+        private final long generation; // number of the request, higher for newer requests
+
+        private RouteRequest(Node source, Node target, boolean dragging, boolean print, long generation) {
+            this.source = source;
+            this.target = target;
+            this.dragging = dragging;
+            this.print = print;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * The part of the map a window shows: its size in pixels, the scale and the coordinate of its top left
+     * corner.
+     */
+    public static class View {
+        private final int width; // the width of the view in pixels
+        private final int height; // the height of the view in pixels
+        private final double scale; // pixels per degree of latitude or longitude
+        private final double west; // the longitude at the left edge of the view
+        private final double north; // the latitude at the top edge of the view
+
+        private View(int width, int height, double scale, double west, double north) {
+            this.width = width;
+            this.height = height;
+            this.scale = scale;
+            this.west = west;
+            this.north = north;
+        }
+
+        public int scaleLat(double lat) {
+            return (int) Math.floor((this.north - lat) * this.scale);
+        }
+
+        public int scaleLon(double lon) {
+            return (int) Math.floor((lon - this.west) * this.scale);
+        }
+
+        public double unscaleLat(int y) {
+            return this.north - y / this.scale;
+        }
+
+        public double unscaleLon(int x) {
+            return this.west + x / this.scale;
+        }
+    }
 }
@@ -0,0 +1,324 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+public class MapLoader {
+    private static final long MIN_CHUNK_BYTES = 1 << 20; // smallest slice of the file worth parsing on its own
+    private static final long MAX_CHUNK_BYTES = 1 << 30; // largest slice, well under the 2 GB limit of one mapping
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    }; // every power of ten that is exact as a double
+
+    /**
+     * Reads a map file of intersection (i) and road (r) lines into a graph.
+     * The file is memory-mapped and cut at line boundaries into chunks that are parsed in parallel straight from
+     * the mapped bytes, without creating a String per line or per token. Road endpoints are resolved in a second
+     * parallel pass once every intersection is known, so roads may reference intersections defined later in the
+     * file. Throughput is reported on standard error.
+     *
+     * @param file the map file to read
+     * @return the graph described by the file
+     * @throws UncheckedIOException     if the file cannot be read
+     * @throws IllegalArgumentException if a line is malformed or a road references an unknown intersection
+     */
+    public static Graph load(File file) {
+        long start = System.nanoTime();
+        Records[] chunks;
+        long size;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            size = channel.size();
+            long[] bounds = chunkBounds(channel, size);
+            chunks = new Records[bounds.length - 1];
+            IntStream.range(0, chunks.length).parallel().forEach(i -> {
+                try {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i],
+                            bounds[i + 1] - bounds[i]);
+                    chunks[i] = parse(buffer, bounds[i]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        IdTable nodeIds = concat(chunks, records -> records.nodeIds);
+        IdTable edgeIds = concat(chunks, records -> records.edgeIds);
+        int[] firstNode = new int[chunks.length + 1];
+        int[] firstEdge = new int[chunks.length + 1];
+        for (int i = 0; i < chunks.length; i++) {
+            firstNode[i + 1] = firstNode[i] + chunks[i].nodeIds.count;
+            firstEdge[i + 1] = firstEdge[i] + chunks[i].edgeIds.count;
+        }
+        double[] coordinates = new double[2 * firstNode[chunks.length]];
+        int[] edgeA = new int[firstEdge[chunks.length]];
+        int[] edgeB = new int[firstEdge[chunks.length]];
+        nodeIds.indexOf(""); // builds the hash index once before the parallel lookups
+        IntStream.range(0, chunks.length).parallel().forEach(i -> {
+            Records records = chunks[i];
+            System.arraycopy(records.coordinates, 0, coordinates, 2 * firstNode[i], 2 * records.nodeIds.count);
+            for (int e = 0; e < records.edgeIds.count; e++) {
+                edgeA[firstEdge[i] + e] = resolve(nodeIds, records, e, 0);
+                edgeB[firstEdge[i] + e] = resolve(nodeIds, records, e, 1);
+            }
+        });
+        Graph graph = new Graph(nodeIds, coordinates, edgeIds, edgeA, edgeB);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long records = (long) graph.getNodeCount() + graph.getEdgeCount();
+        System.err.printf("Loaded %d intersections and %d roads from %.1f MB in %.2fs (%.1f MB/s, %.0f records/s)\n",
+                graph.getNodeCount(), graph.getEdgeCount(), size / 1e6, seconds, size / 1e6 / seconds,
+                records / seconds);
+        return graph;
+    }
+
+    /**
+     * Private helper method that cuts the file into chunks, one per few megabytes and at least a few per core,
+     * moving every cut to the start of the line it falls in.
+     *
+     * @return the start of each chunk, followed by the size of the file
+     */
+    private static long[] chunkBounds(FileChannel channel, long size) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long chunkBytes = Math.min(MAX_CHUNK_BYTES, Math.max(MIN_CHUNK_BYTES, size / (4L * cores)));
+        int count = (int) Math.max(1, (size + chunkBytes - 1) / chunkBytes);
+        long[] bounds = new long[count + 1];
+        bounds[count] = size;
+        for (int i = 1; i < count; i++) {
+            bounds[i] = Math.max(bounds[i - 1], nextLineStart(channel, i * chunkBytes, size));
+        }
+        return bounds;
+    }
+
+    /**
+     * Private helper method that finds the first line starting at or after a position.
+     */
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        // a line starts at position exactly when the byte before it ends a line
+        for (long at = position - 1; at < size; at += window.limit()) {
+            window.clear();
+            if (channel.read(window, at) <= 0) {
+                break;
+            }
+            window.flip();
+            for (int i = 0; i < window.limit(); i++) {
+                if (window.get(i) == '\n') {
+                    return at + i + 1;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Private helper method that parses every line of one chunk. Lines are split on whitespace like
+     * String.split("\\s+"): lines that start with whitespace or whose first token is neither i nor r are skipped.
+     */
+    private static Records parse(MappedByteBuffer buffer, long chunkStart) {
+        Records records = new Records();
+        int[] tokens = new int[8]; // start and end of the first four tokens of a line
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int count = tokenize(buffer, lineStart, lineEnd, tokens);
+            if (count > 0 && tokens[1] - tokens[0] == 1) {
+                byte type = buffer.get(tokens[0]);
+                if (type == 'i' || type == 'r') {
+                    if (count < 4) {
+                        throw new IllegalArgumentException("Malformed line at byte %d: %s".formatted(
+                                chunkStart + lineStart, text(buffer, lineStart, lineEnd).strip()));
+                    }
+                    if (type == 'i') {
+                        records.nodeIds.add(buffer, tokens[2], tokens[3]);
+                        records.addCoordinates(parseDouble(buffer, tokens[4], tokens[5]),
+                                parseDouble(buffer, tokens[6], tokens[7]));
+                    } else {
+                        records.edgeIds.add(buffer, tokens[2], tokens[3]);
+                        records.endpointIds.add(buffer, tokens[4], tokens[5]);
+                        records.endpointIds.add(buffer, tokens[6], tokens[7]);
+                    }
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return records;
+    }
+
+    /**
+     * Private helper method that finds the first four whitespace-separated tokens of a line.
+     *
+     * @return the number of tokens found, 0 if the line is empty or starts with whitespace
+     */
+    private static int tokenize(ByteBuffer buffer, int start, int end, int[] tokens) {
+        int count = 0;
+        int i = start;
+        while (count < 4 && i < end && !isWhitespace(buffer.get(i))) {
+            tokens[2 * count] = i;
+            while (i < end && !isWhitespace(buffer.get(i))) {
+                i++;
+            }
+            tokens[2 * count + 1] = i;
+            count++;
+            while (i < end && isWhitespace(buffer.get(i))) {
+                i++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * Private helper method that parses a decimal number straight from the mapped bytes. Plain decimals with up
+     * to 18 digits and 22 fraction digits are parsed as an exact integer divided by an exact power of ten, which
+     * rounds correctly like Double.parseDouble. Anything else, such as exponents, falls back to
+     * Double.parseDouble.
+     *
+     * @throws NumberFormatException if the token is not a number
+     */
+    private static double parseDouble(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1; // -1 until the decimal point is seen
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = 10 * mantissa + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < end || digits == 0 || digits > 18 || mantissa >= 1L << 53 || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(text(buffer, start, end));
+        }
+        double value = mantissa / POWERS_OF_TEN[Math.max(fractionDigits, 0)];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Private helper method that decodes a run of mapped bytes, for error messages and rare number formats.
+     */
+    private static String text(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Private helper method to find the index of one endpoint of a road.
+     */
+    private static int resolve(IdTable nodeIds, Records records, int edge, int side) {
+        Strings endpoints = records.endpointIds;
+        int id = 2 * edge + side;
+        int index = nodeIds.indexOf(endpoints.bytes, endpoints.offsets[id],
+                endpoints.offsets[id + 1] - endpoints.offsets[id]);
+        if (index < 0) {
+            throw new IllegalArgumentException("Road [%s] references unknown intersection [%s]"
+                    .formatted(records.edgeIds.get(edge), endpoints.get(id)));
+        }
+        return index;
+    }
+
+    /**
+     * Private helper method that joins the IDs parsed by every chunk, in file order, into one ID table.
+     */
+    private static IdTable concat(Records[] chunks, Function<Records, Strings> part) {
+        int count = 0;
+        int length = 0;
+        for (Records records : chunks) {
+            Strings strings = part.apply(records);
+            count += strings.count;
+            length += strings.offsets[strings.count];
+        }
+        byte[] bytes = new byte[length];
+        int[] offsets = new int[count + 1];
+        int index = 0;
+        for (Records records : chunks) {
+            Strings strings = part.apply(records);
+            int base = offsets[index];
+            System.arraycopy(strings.bytes, 0, bytes, base, strings.offsets[strings.count]);
+            for (int i = 1; i <= strings.count; i++) {
+                offsets[index + i] = base + strings.offsets[i];
+            }
+            index += strings.count;
+        }
+        return new IdTable(bytes, offsets);
+    }
+
+    /**
+     * The records parsed from one chunk of the file.
+     */
+    private static class Records {
+        private final Strings nodeIds = new Strings(); // IDs of the intersections
+        private final Strings edgeIds = new Strings(); // IDs of the roads
+        private final Strings endpointIds = new Strings(); // IDs of the two intersections of each road
+        private double[] coordinates = new double[64]; // packed latitude and longitude of the intersections
+
+        private void addCoordinates(double latitude, double longitude) {
+            int index = nodeIds.count - 1;
+            if (2 * index + 2 > coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, 2 * coordinates.length);
+            }
+            coordinates[2 * index] = latitude;
+            coordinates[2 * index + 1] = longitude;
+        }
+    }
+
+    /**
+     * A growable run of byte strings stored back to back, laid out like an IdTable.
+     */
+    private static class Strings {
+        private byte[] bytes = new byte[256]; // the strings back to back
+        private int[] offsets = new int[33]; // start of each string, with one extra entry marking the end
+        private int count; // number of strings
+
+        private void add(ByteBuffer buffer, int start, int end) {
+            int length = end - start;
+            int offset = offsets[count];
+            if (offset + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, offset + length));
+            }
+            if (count + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+            }
+            buffer.get(start, bytes, offset, length);
+            offsets[++count] = offset + length;
+        }
+
+        private String get(int index) {
+            return new String(bytes, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+        }
+    }
+}
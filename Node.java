@@ -2,114 +2,95 @@
   Name: Marcos Ibáñez Matles
  */
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Node {
-    private final String id; // unique identifier of the node
-    private final double latitude; // latitude of the node's location
-    private final double longitude; // longitude of the node's location
-    private final LinkedList<Edge> edges; // list of edges connected to the node
-    private double dist; // distance of the node from a given source node in Dijkstra's algorithm
-    private Node prev; // previous node in the shortest path from a given source node in Dijkstra's algorithm
-    private int scaledX; // x-coordinate of the node's scaled screen location
-    private int scaledY; // y-coordinate of the node's scaled screen location
-    private static final double EARTH_RADIUS_MI = 3958.8; // radius of the Earth in miles
+    private final Graph graph; // the graph whose arrays back this node
+    private final int index; // position of the node inside the graph's arrays
+    public static final double EARTH_RADIUS_MI = 3958.8; // radius of the Earth in miles
 
     // getters and setters
-    public double getLatitude() {
-        return latitude;
-    }
-
-    public double getLongitude() {
-        return longitude;
+    public Graph getGraph() {
+        return graph;
     }
 
-    public String getId() {
-        return id;
-    }
-
-    public LinkedList<Edge> getEdges() {
-        return edges;
+    public int getIndex() {
+        return index;
     }
 
-    public int getScaledX() {
-        return scaledX;
-    }
-
-    public void setScaledX(int scaledX) {
-        this.scaledX = scaledX;
-    }
-
-    public int getScaledY() {
-        return scaledY;
-    }
-
-    public void setScaledY(int scaledY) {
-        this.scaledY = scaledY;
-    }
-
-    public double getDist() {
-        return dist;
-    }
-
-    public void setDist(double dist) {
-        this.dist = dist;
+    public double getLatitude() {
+        return graph.getLatitude(index);
     }
 
-    public Node getPrev() {
-        return prev;
+    public double getLongitude() {
+        return graph.getLongitude(index);
     }
 
-    public void setPrev(Node prev) {
-        this.prev = prev;
+    public String getId() {
+        return graph.getNodeIds().get(index);
     }
 
     /**
-     * Creates a new Node object with the specified parameters.
+     * Creates a new Node object viewing the node at the given index of a graph.
      *
-     * @param id        The unique identifier of the node.
-     * @param latitude  The latitude coordinate of the node.
-     * @param longitude The longitude coordinate of the node.
+     * @param graph the graph that stores the node
+     * @param index the index of the node inside the graph
      */
-    public Node(String id, double latitude, double longitude) {
-        this.id = id;
-        this.latitude = latitude;
-        this.longitude = longitude;
-        this.edges = new LinkedList<>();
-        this.dist = Double.POSITIVE_INFINITY;
+    public Node(Graph graph, int index) {
+        this.graph = graph;
+        this.index = index;
     }
 
     /**
-     * Adds an edge to the list of edges connected to this node.
+     * Returns the edges connected to this node, in the order they appear in the graph's adjacency arrays.
      *
-     * @param e The edge to add.
+     * @return a list of views of the connected edges
      */
-    public void addEdge(Edge e) {
-        this.edges.add(e);
+    public List<Edge> getEdges() {
+        List<Edge> edges = new ArrayList<>();
+        for (int arc = graph.getFirstArc(index); arc < graph.getFirstArc(index + 1); arc++) {
+            edges.add(graph.getEdge(graph.getArcEdge(arc)));
+        }
+        return edges;
     }
 
     /**
-     * Calculates the distance between two nodes using the Haversine formula.
+     * Calculates the distance between two nodes using the Haversine formula, with the trigonometry the graph
+     * has precomputed for its nodes.
      *
      * @param a The first node.
      * @param b The second node.
      * @return The distance between the two nodes in miles.
      */
     public static double dist(Node a, Node b) {
-        double latA = Math.toRadians(a.getLatitude());
-        double lonA = Math.toRadians(a.getLongitude());
-        double latB = Math.toRadians(b.getLatitude());
-        double lonB = Math.toRadians(b.getLongitude());
-
-        double dLat = latB - latA;
-        double dLon = lonB - lonA;
+        if (a.graph == b.graph) {
+            return a.graph.getGeodesic().distance(a.index, b.index);
+        }
+        return dist(a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude());
+    }
 
-        double step1 = (Math.sin(dLat / 2) * Math.sin(dLat / 2)) + Math.cos(latA) * Math.cos(latB) *
-                (Math.sin(dLon / 2) * Math.sin(dLon / 2));
+    /**
+     * Calculates the distance between two coordinates using the Haversine formula.
+     *
+     * @param latitudeA  The latitude of the first point.
+     * @param longitudeA The longitude of the first point.
+     * @param latitudeB  The latitude of the second point.
+     * @param longitudeB The longitude of the second point.
+     * @return The distance between the two points in miles.
+     */
+    public static double dist(double latitudeA, double longitudeA, double latitudeB, double longitudeB) {
+        return Geodesic.distance(latitudeA, longitudeA, latitudeB, longitudeB);
+    }
 
-        double step2 = Math.asin(Math.sqrt(step1));
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Node other && other.graph == this.graph && other.index == this.index;
+    }
 
-        return 2 * EARTH_RADIUS_MI * step2;
+    @Override
+    public int hashCode() {
+        return index;
     }
 
     public String toString() {
@@ -0,0 +1,48 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public interface NodeQueue {
+    /**
+     * Removes every node from the queue.
+     */
+    void clear();
+
+    /**
+     * Returns whether the queue holds no nodes.
+     *
+     * @return true if the queue is empty
+     */
+    boolean isEmpty();
+
+    /**
+     * Inserts a node with the given key, or lowers its key if the node is already queued.
+     * A key that is not lower than the queued one is ignored.
+     *
+     * @param node the index of the node
+     * @param key  the priority of the node, smaller keys are polled first
+     */
+    void push(int node, double key);
+
+    /**
+     * Removes the node with the smallest key.
+     *
+     * @return the index of the removed node
+     */
+    int poll();
+
+    /**
+     * Returns the smallest key in the queue without removing its node.
+     *
+     * @return the smallest key, or Double.POSITIVE_INFINITY if the queue is empty
+     */
+    double peekKey();
+
+    /**
+     * Returns whether a node is currently queued.
+     *
+     * @param node the index of the node
+     * @return true if the node is in the queue
+     */
+    boolean contains(int node);
+}
@@ -2,79 +2,118 @@
   Name: Marcos Ibáñez Matles
  */
 
-import java.util.LinkedList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
 
 public class Path {
     private final Node source; // the source node of the path
     private final Node target; // the target node of the path
-    private final LinkedList<Edge> edges; // linked list of edges connecting the nodes in the path
-    private final LinkedList<Node> nodes; // linked list of nodes representing the path
+    private final int[] nodes; // indices of the nodes from the source to the target, null if there is no path
+    private final int[] edges; // indices of the edges, edges[i] joining nodes[i] and nodes[i + 1]
     private final double distance; // the total distance of the path in miles
 
     // getters and setters
-    public LinkedList<Node> getNodes() {
+    public int[] getNodeIndices() {
         return nodes;
     }
 
+    public int[] getEdgeIndices() {
+        return edges;
+    }
+
     public double getDistance() {
         return distance;
     }
 
     /**
-     * Creates a Path object that represents a path from a source node to a target node
-     * through a given list of nodes.
+     * Creates a Path object that represents a path from a source node to a target node.
      *
-     * @param source the starting node of the path
-     * @param target the destination node of the path
-     * @param nodes  a linked list of nodes representing the path
+     * @param source   the starting node of the path
+     * @param target   the destination node of the path
+     * @param nodes    the indices of the nodes from the source to the target, or null if there is no path
+     * @param edges    the indices of the edges between consecutive nodes, or null if there is no path
+     * @param distance the total distance of the path in miles, as found by the search
      */
-    public Path(Node source, Node target, LinkedList<Node> nodes) {
+    public Path(Node source, Node target, int[] nodes, int[] edges, double distance) {
         this.source = source;
         this.target = target;
         this.nodes = nodes;
-        this.edges = this.getEdgesInPath();
-        this.distance = this.getTotalMiles();
+        this.edges = edges;
+        this.distance = nodes == null ? Double.POSITIVE_INFINITY : distance;
     }
 
     /**
-     * Returns a linked list of edges connecting the nodes in the path.
-     * If there are no nodes in the path, returns null.
+     * Creates a Path object that represents the absence of a path between two nodes.
      *
-     * @return a linked list of edges connecting the nodes in the path
+     * @param source the starting node
+     * @param target the destination node
+     * @return a path with no nodes and an infinite distance
      */
-    public LinkedList<Edge> getEdgesInPath() {
-        if (this.nodes == null) {
-            return null;
+    public static Path none(Node source, Node target) {
+        return new Path(source, target, null, null, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Builds the path to a target by following the predecessor edges of a search tree back to its root. The
+     * tree is walked twice, once to count the nodes and once to fill the arrays from the end, so nothing but
+     * the two arrays is allocated.
+     *
+     * @param source   the root of the search tree
+     * @param target   the target node
+     * @param distance the distance of the target found by the search
+     * @param prevEdge gives the edge used to reach each node of the tree, -1 for the root and unreached nodes
+     * @return the path, with no nodes if the walk does not end at the source
+     */
+    public static Path trace(Node source, Node target, double distance, IntUnaryOperator prevEdge) {
+        if (distance == Double.POSITIVE_INFINITY) {
+            return none(source, target);
         }
-        LinkedList<Edge> edgesInPath = new LinkedList<>();
-        for (int i = 0; i < this.nodes.size() - 1; i++) {
-            Node currentNode = this.nodes.get(i);
-            Node nextNode = this.nodes.get(i + 1);
-            for (Edge edge : currentNode.getEdges()) {
-                if (edge.getNext(currentNode) == nextNode) {
-                    edgesInPath.add(edge);
-                    break;
-                }
-            }
+        Graph graph = target.getGraph();
+        int length = 1;
+        int node = target.getIndex();
+        for (int edge = prevEdge.applyAsInt(node); edge != -1; edge = prevEdge.applyAsInt(node)) {
+            node = graph.getOtherEnd(edge, node);
+            length++;
+        }
+        if (node != source.getIndex()) {
+            return none(source, target);
+        }
+        int[] nodes = new int[length];
+        int[] edges = new int[length - 1];
+        node = target.getIndex();
+        nodes[length - 1] = node;
+        for (int i = length - 2; i >= 0; i--) {
+            edges[i] = prevEdge.applyAsInt(node);
+            node = graph.getOtherEnd(edges[i], node);
+            nodes[i] = node;
         }
-        return edgesInPath;
+        return new Path(source, target, nodes, edges, distance);
     }
 
     /**
-     * Returns the total miles of the path.
-     * If there are no edges in the path, returns Double.POSITIVE_INFINITY.
+     * Returns the nodes of the path as a list view over the node indices.
+     * If there is no path, returns null.
      *
-     * @return the total miles of the path
+     * @return the nodes from the source to the target
      */
-    public double getTotalMiles() {
-        if (this.edges == null) {
-            return Double.POSITIVE_INFINITY;
-        }
-        double totalMiles = 0.0;
-        for (Edge edge : this.edges) {
-            totalMiles += edge.getWeight();
+    public List<Node> getNodes() {
+        if (this.nodes == null) {
+            return null;
         }
-        return totalMiles;
+        Graph graph = this.source.getGraph();
+        return new AbstractList<>() {
+            @Override
+            public Node get(int index) {
+                return graph.getNode(nodes[index]);
+            }
+
+            @Override
+            public int size() {
+                return nodes.length;
+            }
+        };
     }
 
     /**
@@ -89,13 +128,61 @@ public class Path {
                     path.source.getId(), path.target.getId());
             return;
         }
+        IdTable ids = path.source.getGraph().getNodeIds();
         StringBuilder toPrint = new StringBuilder();
         toPrint.append("(Total Distance: ").append(String.format("%.2fmi", path.distance))
                 .append(") Intersection list -> [");
-        for (Node node : path.nodes) {
-            toPrint.append(node.getId()).append(", ");
+        for (int node : path.nodes) {
+            toPrint.append(ids.get(node)).append(", ");
         }
         toPrint.setCharAt(toPrint.length() - 2, ']');
         System.out.println(toPrint);
     }
+
+    /**
+     * Collects the nodes and edges of a path in order, for paths assembled piece by piece such as unpacked
+     * contraction hierarchy shortcuts. The arrays grow by doubling and are trimmed once when the path is built.
+     */
+    public static class Builder {
+        private int[] nodes = new int[16]; // indices of the nodes added so far
+        private int[] edges = new int[16]; // indices of the edges added so far
+        private int size; // number of nodes added so far
+
+        /**
+         * Starts a path at a node.
+         *
+         * @param first the index of the first node
+         */
+        public Builder(int first) {
+            this.nodes[this.size++] = first;
+        }
+
+        /**
+         * Extends the path along an edge.
+         *
+         * @param edge the index of the edge leaving the last node
+         * @param node the index of the node at its other end
+         */
+        public void append(int edge, int node) {
+            if (this.size == this.nodes.length) {
+                this.nodes = Arrays.copyOf(this.nodes, 2 * this.size);
+                this.edges = Arrays.copyOf(this.edges, 2 * this.size);
+            }
+            this.edges[this.size - 1] = edge;
+            this.nodes[this.size++] = node;
+        }
+
+        /**
+         * Builds the path.
+         *
+         * @param source   the starting node of the path
+         * @param target   the destination node of the path
+         * @param distance the total distance of the path in miles
+         * @return the path
+         */
+        public Path build(Node source, Node target, double distance) {
+            return new Path(source, target, Arrays.copyOf(this.nodes, this.size),
+                    Arrays.copyOf(this.edges, this.size - 1), distance);
+        }
+    }
 }
@@ -0,0 +1,111 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.Arrays;
+
+public class QueryContext {
+    private final double[] dist; // distance of each node from the source of the current query
+    private final int[] prevEdge; // edge used to reach each node on its shortest path from the source, -1 if none
+    private final int[] reachedVersion; // version of the query that last wrote dist and prevEdge of each node
+    private final int[] settledVersion; // version of the query that last settled each node
+    private int version; // version of the current query, entries stamped with an older version are stale
+    private int settledCount; // number of nodes settled by the current query
+    private final NodeQueue queue; // priority queue of the nodes reached but not yet settled
+
+    // getters and setters
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    public int getNodeCount() {
+        return dist.length;
+    }
+
+    public NodeQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Creates a query context able to search a graph with the given number of nodes.
+     *
+     * @param nodeCount the number of nodes in the graph
+     * @param queueType the kind of priority queue searches with this context use
+     */
+    public QueryContext(int nodeCount, QueueType queueType) {
+        this.queue = queueType.create(nodeCount);
+        this.dist = new double[nodeCount];
+        this.prevEdge = new int[nodeCount];
+        this.reachedVersion = new int[nodeCount];
+        this.settledVersion = new int[nodeCount];
+    }
+
+    /**
+     * Starts a new query. Every node becomes unreached and unsettled without touching the per-node arrays,
+     * except once every 2^31 queries when the version stamps wrap around. Only the nodes still queued from
+     * the previous query are cleared from the queue.
+     */
+    public void begin() {
+        if (this.version == Integer.MAX_VALUE) {
+            Arrays.fill(this.reachedVersion, 0);
+            Arrays.fill(this.settledVersion, 0);
+            this.version = 0;
+        }
+        this.version++;
+        this.settledCount = 0;
+        this.queue.clear();
+    }
+
+    /**
+     * Returns the distance of a node from the source of the current query.
+     *
+     * @param node the index of the node
+     * @return the tentative or final distance, or Double.POSITIVE_INFINITY if the node was not reached
+     */
+    public double getDist(int node) {
+        return this.reachedVersion[node] == this.version ? this.dist[node] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the edge used to reach a node on its shortest path from the source of the current query.
+     *
+     * @param node the index of the node
+     * @return the index of the edge, or -1 if the node is the source or was not reached
+     */
+    public int getPrevEdge(int node) {
+        return this.reachedVersion[node] == this.version ? this.prevEdge[node] : -1;
+    }
+
+    /**
+     * Records a new tentative distance for a node.
+     *
+     * @param node     the index of the node
+     * @param dist     the distance of the node from the source
+     * @param prevEdge the edge used to reach the node, or -1 for the source
+     */
+    public void update(int node, double dist, int prevEdge) {
+        this.dist[node] = dist;
+        this.prevEdge[node] = prevEdge;
+        this.reachedVersion[node] = this.version;
+    }
+
+    /**
+     * Returns whether a node's distance is final in the current query.
+     *
+     * @param node the index of the node
+     * @return true if the node was settled
+     */
+    public boolean isSettled(int node) {
+        return this.settledVersion[node] == this.version;
+    }
+
+    /**
+     * Marks a node's distance as final in the current query.
+     *
+     * @param node the index of the node
+     */
+    public void settle(int node) {
+        this.settledVersion[node] = this.version;
+        this.settledCount++;
+    }
+}
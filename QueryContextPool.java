@@ -0,0 +1,56 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class QueryContextPool {
+    private final Graph graph; // the graph the pooled contexts search
+    private final QueueType queueType; // the kind of priority queue of the pooled contexts
+    private final ConcurrentLinkedQueue<QueryContext> idle; // contexts that are not used by any query right now
+
+    // getters and setters
+    public Graph getGraph() {
+        return graph;
+    }
+
+    public QueueType getQueueType() {
+        return queueType;
+    }
+
+    /**
+     * Creates an empty pool of query contexts for a graph. Contexts are created on demand,
+     * so the pool grows to the number of queries that ran at the same time.
+     *
+     * @param graph     the graph the contexts search
+     * @param queueType the kind of priority queue the contexts use
+     */
+    public QueryContextPool(Graph graph, QueueType queueType) {
+        this.graph = graph;
+        this.queueType = queueType;
+        this.idle = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Takes an idle context from the pool, or creates one if all are in use, and starts a new query on it.
+     *
+     * @return a context owned by the caller until it is released
+     */
+    public QueryContext acquire() {
+        QueryContext context = this.idle.poll();
+        if (context == null) {
+            context = new QueryContext(this.graph.getNodeCount(), this.queueType);
+        }
+        context.begin();
+        return context;
+    }
+
+    /**
+     * Returns a context to the pool. The caller must not use it afterwards.
+     *
+     * @param context the context to return
+     */
+    public void release(QueryContext context) {
+        this.idle.offer(context);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public enum QueueType {
+    HEAP, // indexed 4-ary heap with decrease-key, works for any keys
+    RADIX; // radix heap over integer-scaled keys, monotone searches only
+
+    /**
+     * Creates an empty queue of this type able to hold every node of a graph.
+     *
+     * @param nodeCount the number of nodes in the graph
+     * @return the new queue
+     */
+    public NodeQueue create(int nodeCount) {
+        return switch (this) {
+            case HEAP -> new DaryHeap(nodeCount);
+            case RADIX -> new RadixHeap(nodeCount);
+        };
+    }
+
+    /**
+     * Finds the queue type named on the command line.
+     *
+     * @param name the name of the type, case-insensitive
+     * @return the matching queue type
+     * @throws IllegalArgumentException if no queue type has that name
+     */
+    public static QueueType fromName(String name) {
+        return QueueType.valueOf(name.toUpperCase());
+    }
+}
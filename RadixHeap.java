@@ -0,0 +1,145 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.Arrays;
+
+public class RadixHeap implements NodeQueue {
+    private static final double SCALE = 1e7; // integer key units per mile, keys are compared to within 1e-7 mi
+    private static final int BUCKET_COUNT = 65; // bucket 0 holds keys equal to last, bucket i keys differing in bit i-1
+    private final int[] heads; // first node of each bucket's linked list, -1 if the bucket is empty
+    private final int[] next; // next node in the same bucket as each node, -1 at the end of the list
+    private final int[] prev; // previous node in the same bucket as each node, -1 at the start of the list
+    private final int[] buckets; // bucket holding each node, -1 if the node is not queued
+    private final long[] scaledKeys; // key of each queued node scaled to an integer
+    private final double[] keys; // exact key of each queued node
+    private long last; // scaled key of the last polled node, no queued key is smaller
+    private int size; // number of queued nodes
+
+    /**
+     * Creates an empty radix heap able to hold every node of a graph.
+     * A radix heap is a monotone queue: keys pushed after a poll must not be smaller than the polled key,
+     * which holds for Dijkstra's algorithm with non-negative weights. Keys are scaled to integers, so nodes whose
+     * keys differ by less than 1e-7 mi may be polled in either order.
+     *
+     * @param nodeCount the number of nodes in the graph
+     */
+    public RadixHeap(int nodeCount) {
+        this.heads = new int[BUCKET_COUNT];
+        this.next = new int[nodeCount];
+        this.prev = new int[nodeCount];
+        this.buckets = new int[nodeCount];
+        this.scaledKeys = new long[nodeCount];
+        this.keys = new double[nodeCount];
+        Arrays.fill(this.heads, -1);
+        Arrays.fill(this.buckets, -1);
+    }
+
+    @Override
+    public void clear() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            for (int node = heads[bucket]; node != -1; node = next[node]) {
+                buckets[node] = -1;
+            }
+            heads[bucket] = -1;
+        }
+        last = 0;
+        size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void push(int node, double key) {
+        if (buckets[node] != -1) {
+            if (key >= keys[node]) {
+                return;
+            }
+            this.unlink(node);
+        } else {
+            size++;
+        }
+        keys[node] = key;
+        scaledKeys[node] = Math.max(last, Math.round(key * SCALE));
+        this.link(node);
+    }
+
+    @Override
+    public int poll() {
+        this.refill();
+        int min = heads[0];
+        this.unlink(min);
+        size--;
+        return min;
+    }
+
+    @Override
+    public double peekKey() {
+        this.refill();
+        return heads[0] == -1 ? Double.POSITIVE_INFINITY : keys[heads[0]];
+    }
+
+    @Override
+    public boolean contains(int node) {
+        return buckets[node] != -1;
+    }
+
+    /**
+     * Private helper method that, when bucket 0 is empty, moves last up to the smallest queued key and
+     * redistributes the first non-empty bucket. Every node it moves lands in a strictly lower bucket.
+     */
+    private void refill() {
+        if (heads[0] != -1 || size == 0) {
+            return;
+        }
+        int bucket = 1;
+        while (heads[bucket] == -1) {
+            bucket++;
+        }
+        long min = Long.MAX_VALUE;
+        for (int node = heads[bucket]; node != -1; node = next[node]) {
+            min = Math.min(min, scaledKeys[node]);
+        }
+        last = min;
+        int node = heads[bucket];
+        heads[bucket] = -1;
+        while (node != -1) {
+            int following = next[node];
+            this.link(node);
+            node = following;
+        }
+    }
+
+    /**
+     * Private helper method that adds a node to the front of the bucket matching its scaled key.
+     */
+    private void link(int node) {
+        long key = scaledKeys[node];
+        int bucket = key == last ? 0 : 64 - Long.numberOfLeadingZeros(key ^ last);
+        buckets[node] = bucket;
+        prev[node] = -1;
+        next[node] = heads[bucket];
+        if (heads[bucket] != -1) {
+            prev[heads[bucket]] = node;
+        }
+        heads[bucket] = node;
+    }
+
+    /**
+     * Private helper method that removes a node from its bucket.
+     */
+    private void unlink(int node) {
+        if (prev[node] != -1) {
+            next[prev[node]] = next[node];
+        } else {
+            heads[buckets[node]] = next[node];
+        }
+        if (next[node] != -1) {
+            prev[next[node]] = prev[node];
+        }
+        buckets[node] = -1;
+    }
+}
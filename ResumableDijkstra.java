@@ -0,0 +1,217 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+public class ResumableDijkstra {
+    private static final int CHECK_INTERVAL = 1024; // nodes settled between checks for cancellation
+    private final Graph graph; // the graph being searched
+    private final Node source; // the node the search grows from
+    private final long weightVersion; // weight version of the graph when the search started
+    private final double[] weights; // arc weights the search started with
+    private final QueueType queueType; // the kind of priority queue the frontier is kept in
+    private int[] slots; // open-addressing hash table from node index to local index + 1, 0 marks an empty slot
+    private int[] nodes; // node index of each reached node, by local index in the order they were reached
+    private double[] dist; // tentative or final distance of each reached node
+    private int[] prevEdge; // edge used to reach each reached node, -1 for the source
+    private boolean[] settled; // whether the distance of each reached node is final
+    private NodeQueue queue; // local indices of the frontier, able to hold as many nodes as the arrays
+    private int reached; // number of reached nodes
+    private int settledCount; // number of settled nodes
+
+    // getters and setters
+    public Node getSource() {
+        return source;
+    }
+
+    public long getWeightVersion() {
+        return weightVersion;
+    }
+
+    public synchronized int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Starts a search from a source without settling anything yet. Unlike a QueryContext, which holds an entry
+     * for every node of the graph, the search only stores the nodes it has reached, in arrays that grow with
+     * the explored region. The frontier is kept in a queue of the given type over the local indices of the
+     * reached nodes, which is rebuilt at twice the size whenever the arrays grow.
+     *
+     * @param source    the node the search grows from
+     * @param queueType the kind of priority queue the frontier is kept in, as chosen with --queue
+     */
+    public ResumableDijkstra(Node source, QueueType queueType) {
+        this.graph = source.getGraph();
+        this.source = source;
+        this.weightVersion = this.graph.getWeightVersion();
+        this.weights = this.graph.getArcWeights();
+        this.queueType = queueType;
+        this.slots = new int[64];
+        this.nodes = new int[32];
+        this.dist = new double[32];
+        this.prevEdge = new int[32];
+        this.settled = new boolean[32];
+        this.queue = queueType.create(32);
+        this.queue.push(this.reach(source.getIndex(), 0, -1), 0);
+    }
+
+    /**
+     * Returns the shortest path from the source to a target. A target that is already settled is answered
+     * from the stored tree; otherwise the search resumes from its frontier and settles nodes, nearest first,
+     * until the target is settled or the frontier runs out. Nothing settled before is ever searched again.
+     *
+     * @param target the target node
+     * @return the shortest path, with no nodes if the target cannot be reached
+     */
+    public synchronized Path pathTo(Node target) {
+        return this.pathTo(target, () -> false);
+    }
+
+    /**
+     * Returns the shortest path from the source to a target like pathTo(Node), but gives up once the search
+     * has been cancelled, which is checked about every thousand settled nodes. Nothing settled so far is lost,
+     * so a later call picks up where the cancelled one stopped.
+     *
+     * @param target    the target node
+     * @param cancelled tells whether the caller no longer needs the path
+     * @return the shortest path, with no nodes if the target cannot be reached, or null if cancelled
+     */
+    public synchronized Path pathTo(Node target, BooleanSupplier cancelled) {
+        if (target == null) {
+            throw new NullPointerException("Cannot find shortest path, target is null");
+        }
+        int local = this.settle(target.getIndex(), cancelled);
+        if (local == -2) {
+            return null;
+        }
+        if (local == -1) {
+            return Path.none(this.source, target);
+        }
+        return Path.trace(this.source, target, dist[local], node -> prevEdge[this.find(node)]);
+    }
+
+    /**
+     * Returns the shortest path distance from the source to a target, resuming the search if needed.
+     *
+     * @param target the index of the target node
+     * @return the distance in miles, or Double.POSITIVE_INFINITY if the target cannot be reached
+     */
+    public synchronized double distanceTo(int target) {
+        int local = this.settle(target, () -> false);
+        return local == -1 ? Double.POSITIVE_INFINITY : dist[local];
+    }
+
+    /**
+     * Private helper method that settles nodes until the target is settled or the search is cancelled.
+     *
+     * @return the local index of the target, -1 if it cannot be reached, or -2 if the search was cancelled
+     */
+    private int settle(int target, BooleanSupplier cancelled) {
+        int local = this.find(target);
+        while (local == -1 || !settled[local]) {
+            if (queue.isEmpty()) {
+                return -1;
+            }
+            if (settledCount % CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return -2;
+            }
+            int current = queue.poll();
+            settled[current] = true;
+            settledCount++;
+            int node = nodes[current];
+            double currentDist = dist[current];
+            for (int arc = graph.getFirstArc(node); arc < graph.getFirstArc(node + 1); arc++) {
+                int next = graph.getArcTarget(arc);
+                double newDist = currentDist + weights[arc];
+                int nextLocal = this.find(next);
+                if (nextLocal == -1) {
+                    if (newDist != Double.POSITIVE_INFINITY) {
+                        nextLocal = this.reach(next, newDist, graph.getArcEdge(arc));
+                        queue.push(nextLocal, newDist);
+                    }
+                } else if (!settled[nextLocal] && newDist < dist[nextLocal]) {
+                    dist[nextLocal] = newDist;
+                    prevEdge[nextLocal] = graph.getArcEdge(arc);
+                    queue.push(nextLocal, newDist);
+                }
+            }
+            if (local == -1) {
+                local = this.find(target);
+            }
+        }
+        return local;
+    }
+
+    /**
+     * Private helper method that looks up the local index of a node.
+     *
+     * @return the local index, or -1 if the node was not reached
+     */
+    private int find(int node) {
+        int mask = slots.length - 1;
+        for (int slot = hash(node) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (nodes[slots[slot] - 1] == node) {
+                return slots[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Private helper method that records a newly reached node, growing the arrays, the queue and the hash table
+     * as needed. A grown queue gets the unsettled reached nodes pushed again, none of them nearer than the last
+     * settled node, so a monotone queue stays valid.
+     *
+     * @return the local index of the node
+     */
+    private int reach(int node, double distance, int edge) {
+        if (reached == nodes.length) {
+            int capacity = 2 * nodes.length;
+            nodes = Arrays.copyOf(nodes, capacity);
+            dist = Arrays.copyOf(dist, capacity);
+            prevEdge = Arrays.copyOf(prevEdge, capacity);
+            settled = Arrays.copyOf(settled, capacity);
+            queue = queueType.create(capacity);
+            for (int local = 0; local < reached; local++) {
+                if (!settled[local]) {
+                    queue.push(local, dist[local]);
+                }
+            }
+        }
+        if (2 * (reached + 1) > slots.length) {
+            slots = new int[2 * slots.length];
+            for (int local = 0; local < reached; local++) {
+                this.insertSlot(local);
+            }
+        }
+        int local = reached++;
+        nodes[local] = node;
+        dist[local] = distance;
+        prevEdge[local] = edge;
+        this.insertSlot(local);
+        return local;
+    }
+
+    /**
+     * Private helper method that stores a reached node in the first free slot from its hash.
+     */
+    private void insertSlot(int local) {
+        int mask = slots.length - 1;
+        int slot = hash(nodes[local]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = local + 1;
+    }
+
+    /**
+     * Private helper method that spreads node indices, which are often close together, over the slots.
+     */
+    private static int hash(int node) {
+        int h = node * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,368 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+public class RoadIndex {
+    private static final int NODE_SIZE = 16; // children of each tree node, and edges of each leaf
+    private static final double MILES_PER_DEGREE = Math.toRadians(1) * Node.EARTH_RADIUS_MI; // along a meridian
+    private final Graph graph; // the graph whose edges are indexed
+    private final int[] edges; // edge indices in leaf order, each leaf owning a contiguous run
+    private final double[] boxes; // bounding box of each tree node, packed as [minLat, minLon, maxLat, maxLon, ...]
+    private final int[] firstChild; // first child of each tree node, or its first position in edges for leaves
+    private final int[] childCounts; // number of children or edges of each tree node
+    private final int leafCount; // number of leaves, which come first among the tree nodes; the root is last
+
+    /**
+     * Builds a packed R-tree over the road segments of a graph with Sort-Tile-Recursive bulk loading: the
+     * segments are sorted into vertical slices by longitude, each slice is sorted by latitude and cut into
+     * leaves of NODE_SIZE segments, and the leaves are packed the same way into the level above until one
+     * root is left. Every node is full except the last of each level, so the tree is as shallow and tight as
+     * it can be, and it lives in a few flat arrays.
+     *
+     * @param graph the graph whose edges are indexed
+     */
+    public RoadIndex(Graph graph) {
+        this.graph = graph;
+        int edgeCount = graph.getEdgeCount();
+        double[] edgeBoxes = new double[4 * edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int a = graph.getEdgeA(edge);
+            int b = graph.getEdgeB(edge);
+            edgeBoxes[4 * edge] = Math.min(graph.getLatitude(a), graph.getLatitude(b));
+            edgeBoxes[4 * edge + 1] = Math.min(graph.getLongitude(a), graph.getLongitude(b));
+            edgeBoxes[4 * edge + 2] = Math.max(graph.getLatitude(a), graph.getLatitude(b));
+            edgeBoxes[4 * edge + 3] = Math.max(graph.getLongitude(a), graph.getLongitude(b));
+        }
+        this.edges = strOrder(edgeBoxes, edgeCount);
+
+        // each level packs the one below it, whose items are already in their final order
+        int nodeCount = 0;
+        for (int items = edgeCount, groups = 0; groups != 1; items = groups) {
+            groups = Math.max(1, (items + NODE_SIZE - 1) / NODE_SIZE);
+            nodeCount += groups;
+        }
+        this.boxes = new double[4 * nodeCount];
+        this.firstChild = new int[nodeCount];
+        this.childCounts = new int[nodeCount];
+        double[] itemBoxes = new double[4 * edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            System.arraycopy(edgeBoxes, 4 * this.edges[i], itemBoxes, 4 * i, 4);
+        }
+        int itemCount = edgeCount;
+        int levelStart = 0;
+        int leaves = -1;
+        while (true) {
+            int groups = Math.max(1, (itemCount + NODE_SIZE - 1) / NODE_SIZE);
+            for (int group = 0; group < groups; group++) {
+                int node = levelStart + group;
+                int first = group * NODE_SIZE;
+                int count = Math.min(NODE_SIZE, itemCount - first);
+                this.firstChild[node] = first;
+                this.childCounts[node] = count;
+                double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                        Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+                for (int i = first; i < first + count; i++) {
+                    box[0] = Math.min(box[0], itemBoxes[4 * i]);
+                    box[1] = Math.min(box[1], itemBoxes[4 * i + 1]);
+                    box[2] = Math.max(box[2], itemBoxes[4 * i + 2]);
+                    box[3] = Math.max(box[3], itemBoxes[4 * i + 3]);
+                }
+                System.arraycopy(box, 0, this.boxes, 4 * node, 4);
+            }
+            if (leaves == -1) {
+                leaves = groups;
+            } else {
+                // children of this level are the nodes of the level below
+                for (int group = 0; group < groups; group++) {
+                    this.firstChild[levelStart + group] += levelStart - itemCount;
+                }
+            }
+            if (groups == 1) {
+                break;
+            }
+            int[] order = strOrder(Arrays.copyOfRange(this.boxes, 4 * levelStart, 4 * (levelStart + groups)), groups);
+            this.permute(levelStart, order);
+            itemBoxes = Arrays.copyOfRange(this.boxes, 4 * levelStart, 4 * (levelStart + groups));
+            itemCount = groups;
+            levelStart += groups;
+        }
+        this.leafCount = leaves;
+    }
+
+    /**
+     * Private helper method that returns the Sort-Tile-Recursive order of a set of boxes, which groups every
+     * run of NODE_SIZE boxes into a compact tile.
+     */
+    private static int[] strOrder(double[] boxes, int count) {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = sortKey(boxes[4 * i + 1] + boxes[4 * i + 3], i);
+        }
+        Arrays.parallelSort(keys);
+        int tiles = (count + NODE_SIZE - 1) / NODE_SIZE;
+        int sliceSize = NODE_SIZE * (int) Math.ceil(Math.sqrt(tiles));
+        for (int i = 0; i < count; i++) {
+            int item = (int) keys[i];
+            keys[i] = sortKey(boxes[4 * item] + boxes[4 * item + 2], item);
+        }
+        for (int start = 0; start < count; start += sliceSize) {
+            Arrays.sort(keys, start, Math.min(count, start + sliceSize));
+        }
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /**
+     * Private helper method that packs a coordinate and an item into a long that sorts by the coordinate, to
+     * float precision, then by the item.
+     */
+    private static long sortKey(double coordinate, int item) {
+        int bits = Float.floatToIntBits((float) coordinate);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return (long) bits << 32 | item;
+    }
+
+    /**
+     * Private helper method that reorders the nodes of one level, which keep their own children.
+     */
+    private void permute(int levelStart, int[] order) {
+        double[] oldBoxes = Arrays.copyOfRange(this.boxes, 4 * levelStart, 4 * (levelStart + order.length));
+        int[] oldFirst = Arrays.copyOfRange(this.firstChild, levelStart, levelStart + order.length);
+        int[] oldCounts = Arrays.copyOfRange(this.childCounts, levelStart, levelStart + order.length);
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(oldBoxes, 4 * order[i], this.boxes, 4 * (levelStart + i), 4);
+            this.firstChild[levelStart + i] = oldFirst[order[i]];
+            this.childCounts[levelStart + i] = oldCounts[order[i]];
+        }
+    }
+
+    /**
+     * Finds the point on a road nearest to a coordinate, searching the tree best first: nodes are visited in
+     * order of the distance to their boxes, and the search ends once the next box is farther than the nearest
+     * segment found. Distances are measured in an equirectangular projection centred on the coordinate, which
+     * is exact to well under a foot over the length of a road; roads crossing the 180th meridian are not
+     * supported.
+     *
+     * @param lat the latitude of the coordinate
+     * @param lon the longitude of the coordinate
+     * @return the nearest position on a road, or null if the graph has no edges
+     */
+    public RoadPosition snap(double lat, double lon) {
+        if (this.edges.length == 0) {
+            return null;
+        }
+        double scale = Math.cos(Math.toRadians(lat)); // degrees of longitude to degrees of latitude here
+        int[] heapNodes = new int[64];
+        double[] heapKeys = new double[64];
+        int heapSize = 0;
+        int root = this.firstChild.length - 1;
+        heapNodes[0] = root;
+        heapKeys[0] = this.boxDistance(root, lat, lon, scale);
+        heapSize++;
+        double best = Double.POSITIVE_INFINITY;
+        int bestEdge = -1;
+        double bestFraction = 0;
+        while (heapSize > 0 && heapKeys[0] < best) {
+            int node = heapNodes[0];
+            heapSize--;
+            siftDown(heapNodes, heapKeys, heapSize, heapNodes[heapSize], heapKeys[heapSize]);
+            int first = this.firstChild[node];
+            int end = first + this.childCounts[node];
+            if (node < this.leafCount) {
+                for (int i = first; i < end; i++) {
+                    int edge = this.edges[i];
+                    double fraction = this.project(edge, lat, lon, scale);
+                    double distance = this.pointDistance(edge, fraction, lat, lon, scale);
+                    if (distance < best) {
+                        best = distance;
+                        bestEdge = edge;
+                        bestFraction = fraction;
+                    }
+                }
+                continue;
+            }
+            for (int child = first; child < end; child++) {
+                double key = this.boxDistance(child, lat, lon, scale);
+                if (key >= best) {
+                    continue;
+                }
+                if (heapSize == heapNodes.length) {
+                    heapNodes = Arrays.copyOf(heapNodes, 2 * heapSize);
+                    heapKeys = Arrays.copyOf(heapKeys, 2 * heapSize);
+                }
+                int position = heapSize++;
+                while (position > 0 && heapKeys[(position - 1) / 2] > key) {
+                    heapNodes[position] = heapNodes[(position - 1) / 2];
+                    heapKeys[position] = heapKeys[(position - 1) / 2];
+                    position = (position - 1) / 2;
+                }
+                heapNodes[position] = child;
+                heapKeys[position] = key;
+            }
+        }
+        int a = this.graph.getEdgeA(bestEdge);
+        int b = this.graph.getEdgeB(bestEdge);
+        double snappedLat = this.graph.getLatitude(a)
+                + bestFraction * (this.graph.getLatitude(b) - this.graph.getLatitude(a));
+        double snappedLon = this.graph.getLongitude(a)
+                + bestFraction * (this.graph.getLongitude(b) - this.graph.getLongitude(a));
+        return new RoadPosition(bestEdge, bestFraction, snappedLat, snappedLon, Math.sqrt(best) * MILES_PER_DEGREE);
+    }
+
+    /**
+     * Snaps many coordinates at once on all cores. The coordinates are first put in Z-order, so that each
+     * thread snaps runs of nearby coordinates that visit the same parts of the tree while they are cached.
+     *
+     * @param lats the latitude of each coordinate
+     * @param lons the longitude of each coordinate
+     * @return the nearest road position of each coordinate, in the order of the coordinates
+     */
+    public RoadPosition[] snapAll(double[] lats, double[] lons) {
+        RoadPosition[] positions = new RoadPosition[lats.length];
+        if (lats.length == 0) {
+            return positions;
+        }
+        double minLat = Arrays.stream(lats).min().getAsDouble();
+        double maxLat = Arrays.stream(lats).max().getAsDouble();
+        double minLon = Arrays.stream(lons).min().getAsDouble();
+        double maxLon = Arrays.stream(lons).max().getAsDouble();
+        long[] keys = new long[lats.length];
+        IntStream.range(0, lats.length).parallel().forEach(i -> {
+            long x = (long) ((lons[i] - minLon) / Math.max(maxLon - minLon, 1e-12) * 0xffff);
+            long y = (long) ((lats[i] - minLat) / Math.max(maxLat - minLat, 1e-12) * 0xffff);
+            keys[i] = (interleave(x) | interleave(y) << 1) << 32 | i;
+        });
+        Arrays.parallelSort(keys);
+        IntStream.range(0, keys.length).parallel().forEach(k -> {
+            int i = (int) keys[k];
+            positions[i] = this.snap(lats[i], lons[i]);
+        });
+        return positions;
+    }
+
+    /**
+     * Visits the roads whose bounding boxes meet a region, for drawing a view of the map. Subtrees whose box
+     * is smaller than the level of detail on both sides would draw as a dot of at most one pixel, so they are
+     * merged: only one of their roads is visited in place of all of them.
+     *
+     * @param minLat the southern edge of the region
+     * @param minLon the western edge of the region
+     * @param maxLat the northern edge of the region
+     * @param maxLon the eastern edge of the region
+     * @param detail the size in degrees below which a subtree is merged, 0 to visit every road in the region
+     * @param action called with the index of each visited road
+     */
+    public void visit(double minLat, double minLon, double maxLat, double maxLon, double detail,
+                      IntConsumer action) {
+        if (this.edges.length > 0) {
+            this.visit(this.firstChild.length - 1, minLat, minLon, maxLat, maxLon, detail, action);
+        }
+    }
+
+    /**
+     * Private helper method that visits the roads of one subtree meeting a region.
+     */
+    private void visit(int node, double minLat, double minLon, double maxLat, double maxLon, double detail,
+                       IntConsumer action) {
+        if (this.boxes[4 * node] > maxLat || this.boxes[4 * node + 2] < minLat
+                || this.boxes[4 * node + 1] > maxLon || this.boxes[4 * node + 3] < minLon) {
+            return;
+        }
+        if (this.boxes[4 * node + 2] - this.boxes[4 * node] < detail
+                && this.boxes[4 * node + 3] - this.boxes[4 * node + 1] < detail) {
+            while (node >= this.leafCount) {
+                node = this.firstChild[node];
+            }
+            action.accept(this.edges[this.firstChild[node]]);
+            return;
+        }
+        int first = this.firstChild[node];
+        int end = first + this.childCounts[node];
+        if (node < this.leafCount) {
+            for (int i = first; i < end; i++) {
+                action.accept(this.edges[i]);
+            }
+            return;
+        }
+        for (int child = first; child < end; child++) {
+            this.visit(child, minLat, minLon, maxLat, maxLon, detail, action);
+        }
+    }
+
+    /**
+     * Private helper method that spreads the low 16 bits of a value to the even bits of the result.
+     */
+    private static long interleave(long value) {
+        value &= 0xffff;
+        value = (value | value << 8) & 0x00ff00ffL;
+        value = (value | value << 4) & 0x0f0f0f0fL;
+        value = (value | value << 2) & 0x33333333L;
+        return (value | value << 1) & 0x55555555L;
+    }
+
+    /**
+     * Private helper method that returns the fraction along an edge of the point nearest to a coordinate.
+     */
+    private double project(int edge, double lat, double lon, double scale) {
+        int a = this.graph.getEdgeA(edge);
+        int b = this.graph.getEdgeB(edge);
+        double ax = (this.graph.getLongitude(a) - lon) * scale;
+        double ay = this.graph.getLatitude(a) - lat;
+        double dx = (this.graph.getLongitude(b) - lon) * scale - ax;
+        double dy = this.graph.getLatitude(b) - lat - ay;
+        double length = dx * dx + dy * dy;
+        return length == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / length));
+    }
+
+    /**
+     * Private helper method that returns the squared projected distance between a coordinate and the point
+     * at a fraction along an edge, in degrees of latitude.
+     */
+    private double pointDistance(int edge, double fraction, double lat, double lon, double scale) {
+        int a = this.graph.getEdgeA(edge);
+        int b = this.graph.getEdgeB(edge);
+        double x = (this.graph.getLongitude(a) + fraction * (this.graph.getLongitude(b) - this.graph.getLongitude(a))
+                - lon) * scale;
+        double y = this.graph.getLatitude(a) + fraction * (this.graph.getLatitude(b) - this.graph.getLatitude(a))
+                - lat;
+        return x * x + y * y;
+    }
+
+    /**
+     * Private helper method that returns the squared projected distance between a coordinate and the box of a
+     * tree node, 0 inside it.
+     */
+    private double boxDistance(int node, double lat, double lon, double scale) {
+        double dy = Math.max(0, Math.max(this.boxes[4 * node] - lat, lat - this.boxes[4 * node + 2]));
+        double dx = Math.max(0, Math.max(this.boxes[4 * node + 1] - lon, lon - this.boxes[4 * node + 3])) * scale;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Private helper method that places an entry at the top of a binary min-heap and sifts it down.
+     */
+    private static void siftDown(int[] nodes, double[] keys, int size, int node, double key) {
+        int position = 0;
+        while (2 * position + 1 < size) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (keys[child] >= key) {
+                break;
+            }
+            nodes[position] = nodes[child];
+            keys[position] = keys[child];
+            position = child;
+        }
+        nodes[position] = node;
+        keys[position] = key;
+    }
+}
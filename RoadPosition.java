@@ -0,0 +1,82 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class RoadPosition {
+    private final int edge; // index of the edge the position lies on
+    private final double fraction; // how far along the edge the position lies, 0 at its first node and 1 at its second
+    private final double latitude; // latitude of the position
+    private final double longitude; // longitude of the position
+    private final double offset; // distance in miles from the snapped coordinate to the position
+
+    // getters and setters
+    public int getEdge() {
+        return edge;
+    }
+
+    public double getFraction() {
+        return fraction;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getOffset() {
+        return offset;
+    }
+
+    /**
+     * Creates a position on a road.
+     *
+     * @param edge      the index of the edge the position lies on
+     * @param fraction  how far along the edge the position lies, from 0 at its first node to 1 at its second
+     * @param latitude  the latitude of the position
+     * @param longitude the longitude of the position
+     * @param offset    the distance in miles from the coordinate that was snapped to the position
+     */
+    public RoadPosition(int edge, double fraction, double latitude, double longitude, double offset) {
+        this.edge = edge;
+        this.fraction = fraction;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.offset = offset;
+    }
+
+    /**
+     * Returns the position of an intersection, at the end of one of its roads. Which road is taken does not
+     * matter: at a fraction of 0 or 1 the part of the road between the position and the intersection weighs
+     * nothing, so every route from or to the position is a route from or to the intersection, and a route
+     * through the far end of the road can never be shorter than the shortest path there.
+     *
+     * @param node the intersection
+     * @return the position, or null if no road meets at the intersection
+     */
+    public static RoadPosition atNode(Node node) {
+        Graph graph = node.getGraph();
+        int index = node.getIndex();
+        if (graph.getFirstArc(index) == graph.getFirstArc(index + 1)) {
+            return null;
+        }
+        int edge = graph.getArcEdge(graph.getFirstArc(index));
+        return new RoadPosition(edge, graph.getEdgeA(edge) == index ? 0 : 1, node.getLatitude(),
+                node.getLongitude(), 0);
+    }
+
+    /**
+     * Returns the weight of the part of the edge between one of its nodes and this position, the edge weight
+     * scaled by the length of that part. A closed edge can still be left at one of its nodes.
+     *
+     * @param graph the graph the edge belongs to
+     * @param toB   whether the part runs to the second node of the edge instead of the first
+     * @return the weight of the part in miles
+     */
+    public double partialWeight(Graph graph, boolean toB) {
+        double part = toB ? 1 - this.fraction : this.fraction;
+        return part == 0 ? 0 : part * graph.getEdgeWeight(this.edge);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class RoadRoute {
+    private final RoadPosition start; // the position the route starts at
+    private final RoadPosition end; // the position the route ends at
+    private final Path path; // the path between the intersections where the route leaves and rejoins roads
+    private final double distance; // the total distance of the route in miles
+
+    // getters and setters
+    public RoadPosition getStart() {
+        return start;
+    }
+
+    public RoadPosition getEnd() {
+        return end;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Creates a route between two positions on roads.
+     *
+     * @param start    the position the route starts at
+     * @param end      the position the route ends at
+     * @param path     the path from the intersection the route reaches first to the one it reaches last, or
+     *                 null if the route stays on one road
+     * @param distance the total distance of the route in miles, including the parts of the first and last roads
+     */
+    public RoadRoute(RoadPosition start, RoadPosition end, Path path, double distance) {
+        this.start = start;
+        this.end = end;
+        this.path = path;
+        this.distance = distance;
+    }
+}
@@ -0,0 +1,17 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public interface Router {
+    /**
+     * Finds the shortest path between two nodes. Implementations take their search state from the pool,
+     * so one router can answer queries from many threads at once.
+     *
+     * @param source the source node of the path
+     * @param target the target node of the path
+     * @param pool   the pool that lends the query contexts
+     * @return a Path object representing the shortest path between source and target nodes
+     * @throws NullPointerException if source or target is null
+     */
+    Path route(Node source, Node target, QueryContextPool pool);
+}
@@ -0,0 +1,40 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public enum RoutingAlgorithm {
+    DIJKSTRA, // Dijkstra's algorithm from the source, stopping once the target is settled
+    BIDIRECTIONAL, // Dijkstra's algorithm from both ends at once, meeting in the middle
+    ASTAR, // A* from the source, guided by a lower bound on the distance left to the target
+    BIDIRECTIONAL_ASTAR, // A* from both ends at once, meeting in the middle
+    CH; // upward searches from both ends in a precomputed contraction hierarchy
+
+    /**
+     * Creates a router that answers queries on a street map with this algorithm.
+     * Algorithms that need preprocessing take it from the street map, which computes it once.
+     *
+     * @param map           the street map whose graph the router searches
+     * @param heuristicType the lower bound that guides goal-directed algorithms, ignored by the others
+     * @return the new router
+     */
+    public Router createRouter(StreetMap map, HeuristicType heuristicType) {
+        return switch (this) {
+            case DIJKSTRA -> new DijkstraRouter();
+            case BIDIRECTIONAL -> new BidirectionalDijkstraRouter();
+            case ASTAR -> new AStarRouter(heuristicType.create(map));
+            case BIDIRECTIONAL_ASTAR -> new BidirectionalAStarRouter(heuristicType.create(map));
+            case CH -> new ContractionHierarchyRouter(map.getHierarchy());
+        };
+    }
+
+    /**
+     * Finds the algorithm named on the command line.
+     *
+     * @param name the name of the algorithm, case-insensitive, with dashes in place of underscores
+     * @return the matching algorithm
+     * @throws IllegalArgumentException if no algorithm has that name
+     */
+    public static RoutingAlgorithm fromName(String name) {
+        return RoutingAlgorithm.valueOf(name.toUpperCase().replace('-', '_'));
+    }
+}
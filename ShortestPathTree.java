@@ -0,0 +1,86 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class ShortestPathTree {
+    private final Graph graph; // the graph the tree spans
+    private final int source; // index of the root of the tree
+    private final long weightVersion; // weight version of the graph the tree was computed with
+    private final int[] prevEdge; // edge used to reach each node from the source, -1 for the source and unreached nodes
+    private final double[] dist; // distance of each node from the source, Double.POSITIVE_INFINITY if unreached
+
+    // getters and setters
+    public Graph getGraph() {
+        return graph;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public long getWeightVersion() {
+        return weightVersion;
+    }
+
+    public double getDist(int node) {
+        return dist[node];
+    }
+
+    /**
+     * Returns the memory taken by the tree's arrays, used to keep caches of trees within a budget.
+     *
+     * @return the approximate size of the tree in bytes
+     */
+    public long getBytes() {
+        return bytesFor(dist.length);
+    }
+
+    /**
+     * Returns the memory taken by the tree of a graph with the given number of nodes.
+     *
+     * @param nodeCount the number of nodes in the graph
+     * @return the approximate size of the tree in bytes
+     */
+    public static long bytesFor(int nodeCount) {
+        return 12L * nodeCount + 64;
+    }
+
+    /**
+     * Computes the full shortest path tree of a source with Dijkstra's algorithm and copies it out of the
+     * search context into compact arrays, so the context can go back to its pool.
+     *
+     * @param source the root of the tree
+     * @param pool   the query contexts the search uses
+     */
+    public ShortestPathTree(Node source, QueryContextPool pool) {
+        this.graph = source.getGraph();
+        this.source = source.getIndex();
+        this.weightVersion = this.graph.getWeightVersion();
+        int nodeCount = this.graph.getNodeCount();
+        this.prevEdge = new int[nodeCount];
+        this.dist = new double[nodeCount];
+        QueryContext context = pool.acquire();
+        try {
+            Graph.dijkstra(source, context);
+            for (int node = 0; node < nodeCount; node++) {
+                this.prevEdge[node] = context.getPrevEdge(node);
+                this.dist[node] = context.getDist(node);
+            }
+        } finally {
+            pool.release(context);
+        }
+    }
+
+    /**
+     * Returns the shortest path from the source of the tree to a target by following predecessor edges,
+     * without searching.
+     *
+     * @param target the target node
+     * @return the shortest path, with no nodes if the target cannot be reached
+     */
+    public Path pathTo(Node target) {
+        Node root = this.graph.getNode(this.source);
+        int node = target.getIndex();
+        return Path.trace(root, target, this.dist[node], next -> this.prevEdge[next]);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ShortestPathTreeCache {
+    private static final int SIGHTING_CAPACITY = 4096; // sources remembered as asked for once
+    private static final int BUILD_CAPACITY = 4; // trees queued or being built at once
+    private final long budget; // largest total size of the cached trees in bytes
+    private final LinkedHashMap<Integer, ShortestPathTree> trees; // cached trees by source, least recently used first
+    private final LinkedHashMap<Integer, Boolean> sightings; // sources asked for once without a tree, oldest first
+    private final Set<Integer> building; // sources whose trees are queued or being built
+    private final ExecutorService builder; // the thread that builds trees, off the path of every query
+    private boolean shutDown; // whether the builder was stopped, after which no tree is admitted
+    private long bytes; // total size of the cached trees
+    private long hits; // queries answered from a cached tree
+    private long misses; // queries that had to search
+
+    // getters and setters
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Creates an empty cache of shortest path trees.
+     *
+     * @param budget the largest total size of the cached trees in bytes, 0 disables the cache
+     */
+    public ShortestPathTreeCache(long budget) {
+        this.budget = budget;
+        this.trees = new LinkedHashMap<>(16, 0.75f, true);
+        this.sightings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+                return this.size() > SIGHTING_CAPACITY;
+            }
+        };
+        this.building = new HashSet<>();
+        this.builder = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "tree-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Finds the shortest path between two nodes, from a cached tree of the source when there is one.
+     * Every source without a tree is answered by the router, which only searches towards the target, so no
+     * query ever waits for a one-to-all search. A source is admitted the second time it is asked for: its full
+     * tree is then built in the background and cached, so a source that keeps coming back, like the fixed end
+     * while the other end is dragged, is answered without searching once the tree is ready. Admission waits
+     * for the second sighting on purpose, because a tree costs a search of the whole graph, and a stream of
+     * sources that are each asked for once, as in most batches, would otherwise keep the builder busy with
+     * trees that are never read. The least recently used trees are evicted when the total size of the trees
+     * goes over the budget, and trees computed before the edge weights last changed are never used. Safe to
+     * call from many threads; trees are computed outside the lock.
+     *
+     * @param source the source node of the path
+     * @param target the target node of the path
+     * @param router the router used for sources without a tree
+     * @param pool   the query contexts the searches use
+     * @return the shortest path between the two nodes
+     */
+    public Path findPath(Node source, Node target, Router router, QueryContextPool pool) {
+        if (source == null || target == null) {
+            throw new NullPointerException("Cannot find shortest path, source or target is null");
+        }
+        Integer key = source.getIndex();
+        synchronized (this) {
+            ShortestPathTree tree = this.trees.get(source.getIndex());
+            if (tree != null && tree.getWeightVersion() != source.getGraph().getWeightVersion()) {
+                // computed with weights that were replaced since, for example while the cache was being cleared
+                this.trees.remove(source.getIndex());
+                this.bytes -= tree.getBytes();
+                tree = null;
+            }
+            if (tree != null) {
+                this.hits++;
+                return tree.pathTo(target);
+            }
+            this.misses++;
+            if (!this.building.contains(key) && !this.shutDown) {
+                if (this.sightings.remove(key) == null || this.building.size() >= BUILD_CAPACITY
+                        || ShortestPathTree.bytesFor(source.getGraph().getNodeCount()) > this.budget) {
+                    this.sightings.put(key, Boolean.TRUE);
+                } else {
+                    // handed to the builder under the lock, so it cannot have been shut down in between
+                    this.building.add(key);
+                    this.builder.execute(() -> {
+                        try {
+                            this.put(new ShortestPathTree(source, pool));
+                        } finally {
+                            synchronized (this) {
+                                this.building.remove(key);
+                            }
+                        }
+                    });
+                }
+            }
+        }
+        return router.route(source, target, pool);
+    }
+
+    /**
+     * Removes every cached tree, for example after edge weights change.
+     */
+    public synchronized void clear() {
+        this.trees.clear();
+        this.sightings.clear();
+        this.bytes = 0;
+    }
+
+    /**
+     * Stops the builder thread and removes every cached tree, for example when the cache is replaced. Queued
+     * trees are dropped and a tree being built is discarded when it finishes. The cache still answers queries
+     * afterwards, always through the router.
+     */
+    public synchronized void shutdown() {
+        this.shutDown = true;
+        this.builder.shutdownNow();
+        this.clear();
+    }
+
+    /**
+     * Private helper method that adds a tree and evicts the least recently used trees until the cache fits its
+     * budget again. A tree computed by another thread in the meantime is kept instead, and a tree whose
+     * weights were replaced while it was built is dropped.
+     */
+    private synchronized void put(ShortestPathTree tree) {
+        if (this.shutDown || tree.getWeightVersion() != tree.getGraph().getWeightVersion()
+                || this.trees.putIfAbsent(tree.getSource(), tree) != null) {
+            return;
+        }
+        this.bytes += tree.getBytes();
+        Iterator<ShortestPathTree> eldest = this.trees.values().iterator();
+        while (this.bytes > this.budget && eldest.hasNext()) {
+            ShortestPathTree evicted = eldest.next();
+            if (evicted != tree) {
+                this.bytes -= evicted.getBytes();
+                eldest.remove();
+            }
+        }
+    }
+}
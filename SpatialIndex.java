@@ -0,0 +1,254 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+public class SpatialIndex {
+    private static final int LEAF_SIZE = 8; // ranges this small are scanned instead of split
+    private final int[] nodes; // node index at each position of the tree
+    private final double[] points; // unit vector on the sphere at each position, packed as [x0, y0, z0, x1, ...]
+    private final byte[] axes; // axis split at the middle position of each range, by position
+
+    // getters and setters
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Builds a k-d tree over the nodes of a graph, independent of how the map is drawn. Each node is stored
+     * as its unit vector on the sphere, where straight-line distance grows with great-circle distance, so the
+     * nearest node in the tree is exactly the nearest node on the Earth. The tree is implicit in flat arrays:
+     * every range of positions holds its splitting node in the middle, the nodes below the split before it
+     * and the rest after it, split along the axis the range spans most.
+     *
+     * @param graph the graph whose nodes are indexed
+     */
+    public SpatialIndex(Graph graph) {
+        int nodeCount = graph.getNodeCount();
+        this.nodes = new int[nodeCount];
+        this.points = new double[3 * nodeCount];
+        this.axes = new byte[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            this.nodes[node] = node;
+            toPoint(graph.getLatitude(node), graph.getLongitude(node), this.points, 3 * node);
+        }
+        this.build(0, nodeCount);
+    }
+
+    /**
+     * Finds the node nearest to a coordinate.
+     *
+     * @param lat the latitude of the coordinate
+     * @param lon the longitude of the coordinate
+     * @return the index of the nearest node, -1 if the graph has no nodes
+     */
+    public int nearest(double lat, double lon) {
+        int[] nearest = this.nearest(lat, lon, 1);
+        return nearest.length == 0 ? -1 : nearest[0];
+    }
+
+    /**
+     * Finds the k nodes nearest to a coordinate by branch and bound: the side of each split holding the
+     * coordinate is searched first, and the other side only if the split is closer than the k-th nearest node
+     * found so far.
+     *
+     * @param lat the latitude of the coordinate
+     * @param lon the longitude of the coordinate
+     * @param k   the number of nodes wanted
+     * @return the indices of the nearest nodes, nearest first, fewer than k if the graph is smaller
+     */
+    public int[] nearest(double lat, double lon, int k) {
+        double[] query = new double[3];
+        toPoint(lat, lon, query, 0);
+        Candidates candidates = new Candidates(Math.min(k, this.nodes.length));
+        if (candidates.capacity > 0) {
+            this.search(0, this.nodes.length, query, candidates);
+        }
+        return candidates.sorted();
+    }
+
+    /**
+     * Private helper method that turns a coordinate into its unit vector on the sphere.
+     */
+    private static void toPoint(double lat, double lon, double[] point, int offset) {
+        double phi = Math.toRadians(lat);
+        double lambda = Math.toRadians(lon);
+        point[offset] = Math.cos(phi) * Math.cos(lambda);
+        point[offset + 1] = Math.cos(phi) * Math.sin(lambda);
+        point[offset + 2] = Math.sin(phi);
+    }
+
+    /**
+     * Private helper method that arranges a range of positions into a subtree.
+     */
+    private void build(int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE) {
+            return;
+        }
+        int axis = 0;
+        double widest = -1;
+        for (int a = 0; a < 3; a++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                min = Math.min(min, points[3 * i + a]);
+                max = Math.max(max, points[3 * i + a]);
+            }
+            if (max - min > widest) {
+                widest = max - min;
+                axis = a;
+            }
+        }
+        int mid = (lo + hi) >>> 1;
+        this.select(lo, hi - 1, mid, axis);
+        axes[mid] = (byte) axis;
+        this.build(lo, mid);
+        this.build(mid + 1, hi);
+    }
+
+    /**
+     * Private helper method that moves the position whose coordinate along an axis ranks k-th in a range into
+     * position k, with smaller coordinates before it and larger ones after it (quickselect).
+     */
+    private void select(int lo, int hi, int k, int axis) {
+        while (lo < hi) {
+            double pivot = points[3 * ((lo + hi) >>> 1) + axis];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (points[3 * i + axis] < pivot) {
+                    i++;
+                }
+                while (points[3 * j + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    this.swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int node = nodes[i];
+        nodes[i] = nodes[j];
+        nodes[j] = node;
+        for (int a = 0; a < 3; a++) {
+            double value = points[3 * i + a];
+            points[3 * i + a] = points[3 * j + a];
+            points[3 * j + a] = value;
+        }
+    }
+
+    /**
+     * Private helper method that offers the nodes of a subtree to the candidates, skipping every subtree that
+     * lies farther than the current k-th candidate.
+     */
+    private void search(int lo, int hi, double[] query, Candidates candidates) {
+        if (hi - lo <= LEAF_SIZE) {
+            for (int i = lo; i < hi; i++) {
+                candidates.offer(nodes[i], this.squaredDistance(i, query));
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int axis = axes[mid];
+        double offset = query[axis] - points[3 * mid + axis];
+        candidates.offer(nodes[mid], this.squaredDistance(mid, query));
+        if (offset < 0) {
+            this.search(lo, mid, query, candidates);
+            if (offset * offset < candidates.bound()) {
+                this.search(mid + 1, hi, query, candidates);
+            }
+        } else {
+            this.search(mid + 1, hi, query, candidates);
+            if (offset * offset < candidates.bound()) {
+                this.search(lo, mid, query, candidates);
+            }
+        }
+    }
+
+    private double squaredDistance(int position, double[] query) {
+        double dx = points[3 * position] - query[0];
+        double dy = points[3 * position + 1] - query[1];
+        double dz = points[3 * position + 2] - query[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * The k nearest nodes found so far, kept in a max-heap on squared distance so the farthest one, which
+     * bounds the search, is at the top.
+     */
+    private static class Candidates {
+        private final int capacity; // number of nodes wanted
+        private final int[] nodes; // candidate nodes in heap order
+        private final double[] distances; // squared distance of each candidate
+        private int size; // number of candidates
+
+        private Candidates(int capacity) {
+            this.capacity = capacity;
+            this.nodes = new int[capacity];
+            this.distances = new double[capacity];
+        }
+
+        /**
+         * Returns the squared distance a node must beat to become a candidate.
+         */
+        private double bound() {
+            return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        private void offer(int node, double distance) {
+            if (size < capacity) {
+                int position = size++;
+                while (position > 0 && distances[(position - 1) / 2] < distance) {
+                    nodes[position] = nodes[(position - 1) / 2];
+                    distances[position] = distances[(position - 1) / 2];
+                    position = (position - 1) / 2;
+                }
+                nodes[position] = node;
+                distances[position] = distance;
+            } else if (distance < distances[0]) {
+                this.replaceTop(node, distance, size);
+            }
+        }
+
+        private void replaceTop(int node, double distance, int heapSize) {
+            int position = 0;
+            while (2 * position + 1 < heapSize) {
+                int child = 2 * position + 1;
+                if (child + 1 < heapSize && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                nodes[position] = nodes[child];
+                distances[position] = distances[child];
+                position = child;
+            }
+            nodes[position] = node;
+            distances[position] = distance;
+        }
+
+        /**
+         * Empties the heap into an array of the candidates, nearest first.
+         */
+        private int[] sorted() {
+            int[] result = new int[size];
+            for (int heapSize = size; heapSize > 0; heapSize--) {
+                result[heapSize - 1] = nodes[0];
+                if (heapSize > 1) {
+                    this.replaceTop(nodes[heapSize - 1], distances[heapSize - 1], heapSize - 1);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -2,14 +2,30 @@
   Name: Marcos Ibáñez Matles
  */
 
-import java.awt.*;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class StreetMap {
     private final Graph graph; // the graph containing the nodes and edges
+    private final QueryContextPool contextPool; // reusable search state for queries on the graph
+    private final SpatialIndex spatialIndex; // nearest intersection lookups by coordinate
+    private final ConnectedComponents components; // component of each intersection, to skip hopeless searches
+    private RoadIndex roadIndex; // nearest road lookups by coordinate, built on first use
+    private final String mapPath; // the file the graph was read from
+    private volatile Router router; // the algorithm that answers shortest path queries
+    private ShortestPathTreeCache treeCache; // full shortest path trees of recently repeated sources
+    private ContractionHierarchy hierarchy; // the contraction hierarchy of the graph, built on first use
+    private LandmarkHeuristic landmarks; // the landmark distance tables of the graph, built on first use
+    private int landmarkCount = LandmarkHeuristic.DEFAULT_COUNT; // number of landmarks to select
+    private LandmarkSelection landmarkSelection = LandmarkSelection.AVOID; // how landmarks are selected
     private Path path; // the path between two nodes
+    private List<Path> alternatives = List.of(); // other routes offered between the same two nodes, best first
+    private int alternativeCount = 1; // number of routes offered between two nodes, the shortest path included
+    private Isochrone isochrone; // the area within a distance of some intersections, shown by the display
 
     private double leftBound; // the left boundary of the graph
     private double rightBound; // the right boundary of the graph
@@ -37,6 +53,90 @@ public class StreetMap {
         return graph;
     }
 
+    public QueryContextPool getContextPool() {
+        return contextPool;
+    }
+
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    public ConnectedComponents getComponents() {
+        return components;
+    }
+
+    /**
+     * Returns the road index of the graph, packed the first time a coordinate is snapped to a road.
+     *
+     * @return the road index of the graph
+     */
+    public synchronized RoadIndex getRoadIndex() {
+        if (this.roadIndex == null) {
+            long start = System.nanoTime();
+            this.roadIndex = new RoadIndex(this.graph);
+            System.err.printf("Packed road index of %d roads in %.1fms\n", this.graph.getEdgeCount(),
+                    (System.nanoTime() - start) / 1e6);
+        }
+        return this.roadIndex;
+    }
+
+    public Router getRouter() {
+        return router;
+    }
+
+    public void setRouter(Router router) {
+        this.router = router;
+    }
+
+    public ShortestPathTreeCache getTreeCache() {
+        return treeCache;
+    }
+
+    public synchronized void setTreeCache(ShortestPathTreeCache treeCache) {
+        if (this.treeCache != null && this.treeCache != treeCache) {
+            this.treeCache.shutdown(); // stops its builder thread, which would otherwise outlive it
+        }
+        this.treeCache = treeCache;
+    }
+
+    public String getMapPath() {
+        return mapPath;
+    }
+
+    /**
+     * Returns the contraction hierarchy of the graph. The first call loads it from the file next to the map,
+     * or builds it and saves it there, so preprocessing runs once per map file.
+     *
+     * @return the contraction hierarchy of the graph
+     */
+    public synchronized ContractionHierarchy getHierarchy() {
+        if (this.hierarchy == null) {
+            this.hierarchy = ContractionHierarchy.loadOrBuild(this.graph, new File(this.mapPath + ".ch"));
+        }
+        return this.hierarchy;
+    }
+
+    /**
+     * Returns the landmark heuristic of the graph. The first call selects the landmarks and computes their
+     * distance tables, which takes a few Dijkstra runs per landmark.
+     *
+     * @return the landmark heuristic of the graph
+     */
+    public synchronized LandmarkHeuristic getLandmarks() {
+        if (this.landmarks == null) {
+            this.landmarks = LandmarkHeuristic.build(this.contextPool, this.landmarkCount, this.landmarkSelection);
+        }
+        return this.landmarks;
+    }
+
+    public void setLandmarkCount(int landmarkCount) {
+        this.landmarkCount = landmarkCount;
+    }
+
+    public void setLandmarkSelection(LandmarkSelection landmarkSelection) {
+        this.landmarkSelection = landmarkSelection;
+    }
+
     public Path getPath() {
         return path;
     }
@@ -45,6 +145,30 @@ public class StreetMap {
         this.path = path;
     }
 
+    public List<Path> getAlternatives() {
+        return alternatives;
+    }
+
+    public void setAlternatives(List<Path> alternatives) {
+        this.alternatives = alternatives;
+    }
+
+    public int getAlternativeCount() {
+        return alternativeCount;
+    }
+
+    public void setAlternativeCount(int alternativeCount) {
+        this.alternativeCount = alternativeCount;
+    }
+
+    public Isochrone getIsochrone() {
+        return isochrone;
+    }
+
+    public void setIsochrone(Isochrone isochrone) {
+        this.isochrone = isochrone;
+    }
+
     /**
      * Constructor for StreetMapping.
      * Initializes the boundaries of the graph to infinity and negative infinity.
@@ -53,75 +177,382 @@ public class StreetMap {
      * @param path the file path containing the graph data
      */
     public StreetMap(String path) {
+        this(path, QueueType.HEAP);
+    }
+
+    /**
+     * Constructor for StreetMapping that selects the priority queue used by searches.
+     *
+     * @param path      the file path containing the graph data
+     * @param queueType the kind of priority queue used by searches on the graph
+     */
+    public StreetMap(String path, QueueType queueType) {
         this.leftBound = Double.POSITIVE_INFINITY;
         this.rightBound = Double.NEGATIVE_INFINITY;
         this.topBound = Double.NEGATIVE_INFINITY;
         this.bottomBound = Double.POSITIVE_INFINITY;
+        this.mapPath = path;
         this.graph = this.getGraphData(path);
+        this.contextPool = new QueryContextPool(this.graph, queueType);
+        this.spatialIndex = new SpatialIndex(this.graph);
+        this.components = new ConnectedComponents(this.graph);
+        this.components.printSummary();
+        this.router = RoutingAlgorithm.BIDIRECTIONAL.createRouter(this, HeuristicType.CHORD);
+        this.treeCache = new ShortestPathTreeCache(Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8));
     }
 
     /**
      * Private helper method to create the graph.
-     * Reads data from a file and creates nodes and edges in the graph.
-     * Updates the boundaries of the graph.
+     * Loads the graph from the binary snapshot of the file when it is fresh, otherwise reads the file with the
+     * parallel MapLoader and writes the snapshot. Updates the boundaries of the graph.
      *
      * @param path the file path containing the graph data
      * @return the graph created from the file data
      */
     private Graph getGraphData(String path) {
-        Graph newGraph = new Graph();
+        Graph graph = GraphSnapshot.loadOrBuild(new File(path));
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            double lat = graph.getLatitude(node);
+            double lon = graph.getLongitude(node);
+            if (lon < this.leftBound) {
+                this.leftBound = lon;
+            }
+            if (lon > this.rightBound) {
+                this.rightBound = lon;
+            }
+            if (lat > this.topBound) {
+                this.topBound = lat;
+            }
+            if (lat < this.bottomBound) {
+                this.bottomBound = lat;
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Finds the intersection a location names. A location is either the ID of an intersection or a coordinate
+     * written as latitude,longitude, which stands for the intersection nearest to it.
+     *
+     * @param location an intersection ID or a latitude,longitude pair
+     * @return the intersection, or null if the location is neither a known ID nor a coordinate
+     */
+    public Node resolve(String location) {
+        Node node = this.graph.find(location);
+        double[] coordinate = node == null ? parseCoordinate(location) : null;
+        if (coordinate == null) {
+            return node;
+        }
+        int nearest = this.spatialIndex.nearest(coordinate[0], coordinate[1]);
+        return nearest == -1 ? null : this.graph.getNode(nearest);
+    }
+
+    /**
+     * Finds the position on a road a location names. An intersection ID stands for the end of one of its roads,
+     * and a latitude,longitude coordinate for the nearest point on any road, which may lie between intersections.
+     *
+     * @param location an intersection ID or a latitude,longitude pair
+     * @return the position, or null if the location is neither a known ID nor a coordinate, or names an
+     * intersection without roads
+     */
+    public RoadPosition locate(String location) {
+        Node node = this.graph.find(location);
+        if (node != null) {
+            return RoadPosition.atNode(node);
+        }
+        double[] coordinate = parseCoordinate(location);
+        return coordinate == null ? null : this.getRoadIndex().snap(coordinate[0], coordinate[1]);
+    }
+
+    /**
+     * Private helper method that parses a latitude,longitude pair.
+     *
+     * @return the latitude and longitude, or null if the location is not a coordinate
+     */
+    private static double[] parseCoordinate(String location) {
+        int comma = location.indexOf(',');
+        if (comma == -1) {
+            return null;
+        }
+        try {
+            return new double[]{Double.parseDouble(location.substring(0, comma)),
+                    Double.parseDouble(location.substring(comma + 1))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Method that finds the main directions between two nodes in the graph using the selected router.
+     * Safe to call from many threads at once, each call searches with its own pooled contexts.
+     *
+     * @param startID A string representing the ID or latitude,longitude of the starting node.
+     * @param endID   A string representing the ID or latitude,longitude of the ending node.
+     * @return A Path object representing the shortest path between the two nodes.
+     */
+    public Path mainDirections(String startID, String endID) {
+        return this.findPath(this.resolve(startID), this.resolve(endID));
+    }
+
+    /**
+     * Finds the shortest path between two nodes in the graph using the selected router, or the cached
+     * shortest path tree of the source when the source was asked for recently. Nodes in different connected
+     * components get no path straight away, without searching.
+     *
+     * @param source The source node of the path.
+     * @param target The target node of the path.
+     * @return A Path object representing the shortest path between the two nodes.
+     */
+    public Path findPath(Node source, Node target) {
+        if (source != null && target != null && !this.components.isConnected(source.getIndex(), target.getIndex())) {
+            return Path.none(source, target);
+        }
+        return this.treeCache.findPath(source, target, this.router, this.contextPool);
+    }
+
+    /**
+     * Finds the shortest path between two nodes and alternatives to it, up to the alternative count in all.
+     * Alternatives are at most a quarter longer than the shortest path and share little road with it and with
+     * each other; both searches are shared by all of them.
+     *
+     * @param source the source node of the routes
+     * @param target the target node of the routes
+     * @return the shortest path followed by the alternatives, or an empty list if the target cannot be reached
+     */
+    public List<Path> findAlternatives(Node source, Node target) {
+        if (source != null && target != null && !this.components.isConnected(source.getIndex(), target.getIndex())) {
+            return List.of();
+        }
+        return AlternativeRoutes.find(source, target, this.alternativeCount, this.contextPool);
+    }
+
+    /**
+     * Finds every intersection within a distance of any of a set of sources, such as the depots of a fleet,
+     * with one bounded search from all of them, along with the outline of the area each source is nearest to.
+     *
+     * @param sources the source nodes
+     * @param budget  the largest distance to reach in miles
+     * @return the reached intersections, their distances and nearest sources, and the outlines
+     */
+    public Isochrone findIsochrone(Node[] sources, double budget) {
+        int[] indices = Arrays.stream(sources).mapToInt(Node::getIndex).toArray();
+        return Isochrone.compute(this.contextPool, indices, budget, true);
+    }
+
+    /**
+     * Finds the shortest route between two positions that may lie partway along roads. The route leaves the
+     * first road through one of its two intersections and joins the last road through one of its two, paying
+     * for the part of each road it drives. One search picks the pair and finds the path at once: it starts
+     * from both intersections of the first road, each at the weight of the part driven to reach it, and ends
+     * at whichever intersection of the last road gives the shorter total. With the contraction hierarchy this
+     * is one hierarchy query, and otherwise one Dijkstra run. A position on an intersection, as made by
+     * RoadPosition.atNode, is only left or joined through that intersection, since driving its whole road to
+     * the other end is never shorter than the shortest path there, so the search starts or ends there alone
+     * and the path always begins and ends with the given intersections; when both positions are on
+     * intersections the path is taken straight from the router. Two positions on the same road may also be
+     * joined along it.
+     *
+     * @param start the position the route starts at
+     * @param end   the position the route ends at
+     * @return the shortest route, with an infinite distance and a path without nodes if there is none
+     */
+    public RoadRoute findRoute(RoadPosition start, RoadPosition end) {
+        Node[] exits = this.edgeEnds(start.getEdge());
+        Node[] entries = this.edgeEnds(end.getEdge());
+        double[] exitWeights = {start.partialWeight(this.graph, false), start.partialWeight(this.graph, true)};
+        double[] entryWeights = {end.partialWeight(this.graph, false), end.partialWeight(this.graph, true)};
+        int exit = exitWeights[0] == 0 ? 0 : exitWeights[1] == 0 ? 1 : -1;
+        int entry = entryWeights[0] == 0 ? 0 : entryWeights[1] == 0 ? 1 : -1;
+        if (exit != -1) {
+            // the far end of the road would tie with the intersection and could become the start of the path
+            exits = new Node[]{exits[exit]};
+            exitWeights = new double[]{0};
+        }
+        if (entry != -1) {
+            entries = new Node[]{entries[entry]};
+            entryWeights = new double[]{0};
+        }
+        Router router = this.router;
+        Path path;
+        if (exit != -1 && entry != -1) {
+            path = this.findPath(exits[0], entries[0]);
+        } else if (!this.components.isConnected(exits[0].getIndex(), entries[0].getIndex())) {
+            path = Path.none(exits[0], entries[0]);
+        } else if (router instanceof ContractionHierarchyRouter hierarchyRouter) {
+            path = hierarchyRouter.route(exits, exitWeights, entries, entryWeights, this.contextPool);
+        } else {
+            path = this.searchRoute(exits, exitWeights, entries, entryWeights);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        int[] nodes = path.getNodeIndices();
+        if (nodes != null) {
+            best = partTo(exits, exitWeights, nodes[0]) + path.getDistance()
+                    + partTo(entries, entryWeights, nodes[nodes.length - 1]);
+        }
+        if (start.getEdge() == end.getEdge()) {
+            double along = Math.abs(end.getFraction() - start.getFraction());
+            double direct = along == 0 ? 0 : along * this.graph.getEdgeWeight(start.getEdge());
+            if (direct <= best) {
+                return new RoadRoute(start, end, null, direct);
+            }
+        }
+        return new RoadRoute(start, end, path, best);
+    }
+
+    /**
+     * Private helper method that runs one Dijkstra search from the given intersections of the first road, each
+     * starting at the weight of the part driven to reach it, until none of the given intersections of the last
+     * road can give a shorter route.
+     *
+     * @return the path from the intersection the best route leaves the first road at to the one it joins the
+     * last road at, its distance not counting the parts of the roads, or a path without nodes if there is none
+     */
+    private Path searchRoute(Node[] exits, double[] exitWeights, Node[] entries, double[] entryWeights) {
+        double[] weights = this.graph.getArcWeights();
+        QueryContext context = this.contextPool.acquire();
         try {
-            Scanner s = new Scanner(new File(path));
-            while (s.hasNext()) {
-                String[] line = s.nextLine().split("\\s+");
-                if (line.length == 0) continue;
-                switch (line[0]) {
-                    case "i" -> {
-                        double lat = Double.parseDouble(line[2]);
-                        double lon = Double.parseDouble(line[3]);
-                        // Create a new Node object and add it to the graph
-                        newGraph.addNode(new Node(line[1], lat, lon));
-                        if (lon < this.leftBound) {
-                            this.leftBound = lon;
-                        }
-                        if (lon > this.rightBound) {
-                            this.rightBound = lon;
-                        }
-                        if (lat > this.topBound) {
-                            this.topBound = lat;
-                        }
-                        if (lat < this.bottomBound) {
-                            this.bottomBound = lat;
-                        }
+            NodeQueue queue = context.getQueue();
+            for (int i = 0; i < exits.length; i++) {
+                if (exitWeights[i] < context.getDist(exits[i].getIndex())) {
+                    context.update(exits[i].getIndex(), exitWeights[i], -1);
+                    queue.push(exits[i].getIndex(), exitWeights[i]);
+                }
+            }
+            double best = Double.POSITIVE_INFINITY;
+            Node entry = null;
+            while (!queue.isEmpty() && queue.peekKey() < best) {
+                int current = queue.poll();
+                context.settle(current);
+                double currentDist = context.getDist(current);
+                for (int j = 0; j < entries.length; j++) {
+                    if (entries[j].getIndex() == current && currentDist + entryWeights[j] < best) {
+                        best = currentDist + entryWeights[j];
+                        entry = entries[j];
+                    }
+                }
+                for (int arc = this.graph.getFirstArc(current); arc < this.graph.getFirstArc(current + 1); arc++) {
+                    int next = this.graph.getArcTarget(arc);
+                    double newDist = currentDist + weights[arc];
+                    if (!context.isSettled(next) && newDist < context.getDist(next)) {
+                        context.update(next, newDist, this.graph.getArcEdge(arc));
+                        queue.push(next, newDist);
                     }
-                    case "r" -> newGraph.addEdge(new Edge(line[1], newGraph.find(line[2]), newGraph.find(line[3])));
                 }
             }
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
+            if (entry == null) {
+                return Path.none(exits[0], entries[0]);
+            }
+            int root = entry.getIndex();
+            for (int edge = context.getPrevEdge(root); edge != -1; edge = context.getPrevEdge(root)) {
+                root = this.graph.getOtherEnd(edge, root);
+            }
+            double distance = context.getDist(entry.getIndex()) - context.getDist(root);
+            return Path.trace(this.graph.getNode(root), entry, distance, context::getPrevEdge);
+        } finally {
+            this.contextPool.release(context);
         }
-        return newGraph;
     }
 
     /**
-     * Method that finds the main directions between two nodes in the graph using Dijkstra's algorithm.
+     * Private helper method that returns the weight of the part of a road driven between a position on it and
+     * one of its intersections, the lighter part if the road is a loop with the intersection at both ends.
+     */
+    private static double partTo(Node[] ends, double[] partWeights, int node) {
+        double weight = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < ends.length; i++) {
+            if (ends[i].getIndex() == node) {
+                weight = Math.min(weight, partWeights[i]);
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Private helper method that returns the first and second node of an edge.
+     */
+    private Node[] edgeEnds(int edge) {
+        return new Node[]{this.graph.getNode(this.graph.getEdgeA(edge)),
+                this.graph.getNode(this.graph.getEdgeB(edge))};
+    }
+
+    /**
+     * Computes the shortest path distances between every source and every target without building any path.
+     * Uses the bucket algorithm on the contraction hierarchy once it has been built or loaded, and one bounded
+     * Dijkstra run per source otherwise. Rows are computed in parallel.
      *
-     * @param startID A string representing the ID of the starting node.
-     * @param endID   A string representing the ID of the ending node.
-     * @return A Path object representing the shortest path between the two nodes.
+     * @param sources the source nodes
+     * @param targets the target nodes
+     * @return the distances in miles in row-major order, entry [i * targets.length + j] going from sources[i] to
+     * targets[j], Double.POSITIVE_INFINITY where there is no path
+     * @throws IllegalArgumentException if the matrix has more entries than an array can hold
      */
-    public Path mainDirections(String startID, String endID) {
-        Graph.dijkstra(this.getGraph().find(startID));
-        return Graph.shortestPath(this.getGraph().find(startID), this.getGraph().find(endID));
+    public double[] distanceMatrix(Node[] sources, Node[] targets) {
+        int[] sourceIndices = Arrays.stream(sources).mapToInt(Node::getIndex).toArray();
+        int[] targetIndices = Arrays.stream(targets).mapToInt(Node::getIndex).toArray();
+        ContractionHierarchy hierarchy;
+        synchronized (this) {
+            hierarchy = this.hierarchy;
+        }
+        if (hierarchy != null) {
+            return DistanceMatrix.compute(hierarchy, this.contextPool, sourceIndices, targetIndices);
+        }
+        return DistanceMatrix.compute(this.contextPool, this.components, sourceIndices, targetIndices);
+    }
+
+    /**
+     * Changes the weights of some edges as one batch, for example to apply live traffic or close roads, and
+     * repairs the speedup structures instead of rebuilding them. Searches running meanwhile finish on the
+     * weights they started with, and every search that starts afterwards sees the whole batch:
+     * <ul>
+     * <li>the landmark tables are repaired first, into tables that bound both the old and the new weights;</li>
+     * <li>the new edge and arc weights are then swapped in at once and the weight version goes up;</li>
+     * <li>the contraction hierarchy, if built, is repaired into a new one that the router switches to;</li>
+     * <li>cached shortest path trees are dropped.</li>
+     * </ul>
+     * Batches are applied one at a time.
+     *
+     * @param edges   the indices of the edges to change
+     * @param weights the new weight of each of those edges in miles, Double.POSITIVE_INFINITY to close it;
+     *                no weight may be lower than the straight-line length of its edge
+     * @return the new weight version of the graph
+     * @throws IllegalArgumentException if an edge does not exist or a weight is invalid, nothing is changed then
+     */
+    public synchronized long updateWeights(int[] edges, double[] weights) {
+        long start = System.nanoTime();
+        double[] oldWeights = this.graph.getEdgeWeights();
+        double[] newWeights = this.graph.withEdgeWeights(edges, weights);
+        if (this.landmarks != null) {
+            this.landmarks.update(this.contextPool, edges, newWeights);
+        }
+        long version = this.graph.setEdgeWeights(newWeights);
+        if (this.hierarchy != null) {
+            this.hierarchy = this.hierarchy.update(edges, oldWeights);
+            if (this.router instanceof ContractionHierarchyRouter) {
+                this.router = new ContractionHierarchyRouter(this.hierarchy);
+            }
+        }
+        this.treeCache.clear();
+        System.err.printf("Applied %d weight updates (version %d) in %.1fms\n", edges.length, version,
+                (System.nanoTime() - start) / 1e6);
+        return version;
     }
 
     public static void main(String[] args) {
-        StreetMap streetMap = new StreetMap(args[0]);
         MapDisplay display = null;
         boolean show = false;
         boolean directions = false;
-        String id1 = null;
-        String id2 = null;
+        QueueType queueType = QueueType.HEAP;
+        RoutingAlgorithm algorithm = RoutingAlgorithm.BIDIRECTIONAL;
+        HeuristicType heuristicType = HeuristicType.CHORD;
+        int landmarkCount = LandmarkHeuristic.DEFAULT_COUNT;
+        LandmarkSelection landmarkSelection = LandmarkSelection.AVOID;
+        String batchFile = null;
+        String trafficFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long treeCacheBytes = -1;
+        double isochroneMiles = -1;
+        int alternativeCount = 1;
+        List<String> locations = new ArrayList<>();
 
         // Loop through the command-line arguments
         for (int i = 1; i < args.length; i++) {
@@ -130,38 +561,94 @@ public class StreetMap {
                 switch (args[i].substring(2)) {
                     case "show" -> show = true;
                     case "directions" -> directions = true;
+                    case "queue" -> queueType = QueueType.fromName(args[++i]);
+                    case "algorithm" -> algorithm = RoutingAlgorithm.fromName(args[++i]);
+                    case "heuristic" -> heuristicType = HeuristicType.fromName(args[++i]);
+                    case "batch" -> batchFile = args[++i];
+                    case "traffic" -> trafficFile = args[++i];
+                    case "threads" -> threads = Integer.parseInt(args[++i]);
+                    case "tree-cache" -> treeCacheBytes = Long.parseLong(args[++i]) << 20;
+                    case "landmarks" -> landmarkCount = Integer.parseInt(args[++i]);
+                    case "landmark-selection" -> landmarkSelection = LandmarkSelection.fromName(args[++i]);
+                    case "isochrone" -> isochroneMiles = Double.parseDouble(args[++i]);
+                    case "alternatives" -> alternativeCount = Integer.parseInt(args[++i]);
                 }
             } else {
-                if (id1 == null) {
-                    id1 = args[i];
-                } else if (id2 == null) {
-                    id2 = args[i];
-                }
+                locations.add(args[i]);
             }
         }
+        String id1 = locations.size() > 0 ? locations.get(0) : null;
+        String id2 = locations.size() > 1 ? locations.get(1) : null;
+        StreetMap streetMap = new StreetMap(args[0], queueType);
+        streetMap.setLandmarkCount(landmarkCount);
+        streetMap.setLandmarkSelection(landmarkSelection);
+        streetMap.setAlternativeCount(alternativeCount);
+        streetMap.setRouter(algorithm.createRouter(streetMap, heuristicType));
+        if (treeCacheBytes >= 0) {
+            streetMap.setTreeCache(new ShortestPathTreeCache(treeCacheBytes));
+        }
 
-        // If the "show" flag is true, create a new MapDisplay and wait for it to load
-        if (show) {
-            display = new MapDisplay(streetMap);
+        // If a traffic file is given, apply its weight updates before answering anything
+        if (trafficFile != null) {
             try {
-                Thread.sleep(100); // wait for map screen to load
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+                new TrafficFeed(streetMap).apply(new File(trafficFile));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            display.setScreenQuadrants(
-                    new QuadTree(new Rectangle(display.getWindowWidth(), display.getWindowHeight())));
+        }
+
+        // If a batch file is given, answer all of its queries on a worker pool
+        if (batchFile != null) {
+            try {
+                new BatchRunner(streetMap, threads).run(new File(batchFile), System.out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // If the "show" flag is true, create a new MapDisplay
+        if (show) {
+            streetMap.getRoadIndex(); // the display culls roads with it, pack it before the first paint
+            display = new MapDisplay(streetMap);
         }
         // If the "directions" flag is true and both IDs are set, find the path and print it
         if (directions) {
-            if (id1 != null && id2 != null) {
-                streetMap.setPath(streetMap.mainDirections(id1, id2));
+            Node source = id1 == null ? null : streetMap.resolve(id1);
+            Node target = id2 == null ? null : streetMap.resolve(id2);
+            if (id1 != null && id2 != null && (source == null || target == null)) {
+                System.err.printf("Unknown intersection or coordinate [%s]\n", source == null ? id1 : id2);
+            } else if (id1 != null && id2 != null) {
+                // the alternatives are filtered against their own shortest path, so that one is printed
+                List<Path> routes = alternativeCount > 1 ? streetMap.findAlternatives(source, target) : List.of();
+                streetMap.setPath(routes.isEmpty() ? streetMap.findPath(source, target) : routes.get(0));
+                streetMap.setAlternatives(routes.isEmpty() ? routes : routes.subList(1, routes.size()));
                 Path.print(streetMap.getPath());
+                for (Path alternative : streetMap.getAlternatives()) {
+                    System.out.print("Alternative ");
+                    Path.print(alternative);
+                }
                 if (display != null) {
-                    display.setFirstNode(streetMap.getGraph().find(id1));
-                    display.setSecondNode(streetMap.getGraph().find(id2));
+                    display.setFirstNode(source);
+                    display.setSecondNode(target);
                     display.repaint();
                 }
             }
         }
+        // If an isochrone distance is given, find everything that close to any of the locations and print it
+        if (isochroneMiles >= 0 && !locations.isEmpty()) {
+            Node[] sources = new Node[locations.size()];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = streetMap.resolve(locations.get(i));
+                if (sources[i] == null) {
+                    System.err.printf("Unknown intersection or coordinate [%s]\n", locations.get(i));
+                    return;
+                }
+            }
+            streetMap.setIsochrone(streetMap.findIsochrone(sources, isochroneMiles));
+            Isochrone.print(streetMap.getIsochrone(), streetMap.getGraph());
+            if (display != null) {
+                display.repaint();
+            }
+        }
     }
 }
\ No newline at end of file
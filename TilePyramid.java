@@ -0,0 +1,503 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TilePyramid {
+    public static final int TILE_SIZE = 256; // width and height of a tile in pixels
+    public static final int MAX_LEVEL = 22; // deepest zoom level, which keeps pixel coordinates within an int
+    public static final long DEFAULT_CACHE_BYTES = 64L << 20; // memory budget of the tile cache by default
+    private static final int MAX_BINNED_TILES = 64; // levels at most this many tiles across draw simplified roads
+    private static final int CACHED_LEVELS = 4; // zoom levels whose projection and roads are kept at once
+    private static final double TOLERANCE = 0.5; // pixels a simplified road may stray from the real one
+    private final StreetMap map; // the street map drawn by the tiles
+    private final Color background; // the color tiles are filled with
+    private final Color roads; // the color roads are drawn in
+    private final Runnable onTileReady; // called from a worker whenever a tile has been drawn
+    private final double west; // the longitude at the left edge of tile column 0 at every level
+    private final double north; // the latitude at the top edge of tile row 0 at every level
+    private final double baseScale; // pixels per degree at level 0, where the whole map fits one tile
+    private final int maxTiles; // largest number of tiles the cache holds
+    private final LinkedHashMap<Long, BufferedImage> tiles; // drawn tiles by key, least recently used first
+    private final Set<Long> pending; // keys of the tiles queued or being drawn
+    private final LinkedHashMap<Integer, Level> levels; // projection and roads of recent levels by level
+    private final ExecutorService workers; // the threads that draw tiles
+    private int[] chainStarts; // start of each chain of roads in chainNodes, built on first use
+    private int[] chainNodes; // nodes of every chain of roads through intersections of two roads, back to back
+    private volatile long wanted; // level and tile range the last view asked for, see isWanted
+
+    // getters and setters
+    public double getWest() {
+        return west;
+    }
+
+    public double getNorth() {
+        return north;
+    }
+
+    /**
+     * Returns the scale of a zoom level, which doubles from one level to the next.
+     *
+     * @param level the zoom level
+     * @return pixels per degree of latitude or longitude
+     */
+    public double getScale(int level) {
+        return this.baseScale * (1L << level);
+    }
+
+    /**
+     * Creates an empty tile pyramid over a street map. Level 0 shows the whole map in one tile, and each level
+     * splits every tile of the level above into four. Tiles are drawn on demand by a pool of worker threads
+     * and kept in an LRU cache.
+     *
+     * @param map         the street map to draw
+     * @param background  the color tiles are filled with
+     * @param roads       the color roads are drawn in
+     * @param cacheBytes  the memory budget of the tile cache
+     * @param onTileReady called from a worker thread whenever a tile has been drawn
+     */
+    public TilePyramid(StreetMap map, Color background, Color roads, long cacheBytes, Runnable onTileReady) {
+        this.map = map;
+        this.background = background;
+        this.roads = roads;
+        this.onTileReady = onTileReady;
+        this.west = map.getLeftBound();
+        this.north = map.getTopBound();
+        double extent = Math.max(map.getRightBound() - map.getLeftBound(), map.getTopBound() - map.getBottomBound());
+        this.baseScale = TILE_SIZE / (extent > 0 ? extent : 1);
+        this.maxTiles = (int) Math.max(16, cacheBytes / (4L * TILE_SIZE * TILE_SIZE));
+        this.tiles = new LinkedHashMap<>(16, 0.75f, true);
+        this.pending = new HashSet<>();
+        this.levels = new LinkedHashMap<>(16, 0.75f, true);
+        this.workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "tile-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Draws the tiles of a view of the map. Tiles missing from the cache are queued for the workers and drawn
+     * meanwhile from the enlarged quarter of their parent tile when that one is cached, so painting never
+     * waits. The ring of tiles around the view is queued after them, so panning finds its tiles ready.
+     *
+     * @param g       the Graphics2D object used for drawing
+     * @param level   the zoom level of the view
+     * @param originX the pixel column, at that level, of the left edge of the view
+     * @param originY the pixel row, at that level, of the top edge of the view
+     * @param width   the width of the view in pixels
+     * @param height  the height of the view in pixels
+     */
+    public void draw(Graphics2D g, int level, int originX, int originY, int width, int height) {
+        int firstColumn = Math.floorDiv(originX, TILE_SIZE);
+        int firstRow = Math.floorDiv(originY, TILE_SIZE);
+        int lastColumn = Math.floorDiv(originX + width - 1, TILE_SIZE);
+        int lastRow = Math.floorDiv(originY + height - 1, TILE_SIZE);
+        this.wanted = wantedRange(level, firstColumn - 1, firstRow - 1, lastColumn + 1, lastRow + 1);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                if (!this.onMap(level, column, row)) {
+                    continue;
+                }
+                int x = column * TILE_SIZE - originX;
+                int y = row * TILE_SIZE - originY;
+                BufferedImage tile = this.request(key(level, column, row));
+                if (tile != null) {
+                    g.drawImage(tile, x, y, null);
+                    continue;
+                }
+                BufferedImage parent = level == 0 ? null
+                        : this.cached(key(level - 1, Math.floorDiv(column, 2), Math.floorDiv(row, 2)));
+                if (parent != null) {
+                    int sx = Math.floorMod(column, 2) * TILE_SIZE / 2;
+                    int sy = Math.floorMod(row, 2) * TILE_SIZE / 2;
+                    g.drawImage(parent, x, y, x + TILE_SIZE, y + TILE_SIZE, sx, sy, sx + TILE_SIZE / 2,
+                            sy + TILE_SIZE / 2, null);
+                }
+            }
+        }
+        for (int row = firstRow - 1; row <= lastRow + 1; row++) {
+            for (int column = firstColumn - 1; column <= lastColumn + 1; column++) {
+                boolean inside = row >= firstRow && row <= lastRow && column >= firstColumn && column <= lastColumn;
+                if (!inside && this.onMap(level, column, row)) {
+                    this.request(key(level, column, row));
+                }
+            }
+        }
+    }
+
+    /**
+     * Private helper method that returns a cached tile, or queues it for the workers if it is neither cached
+     * nor queued yet.
+     *
+     * @return the tile, or null if it is not drawn yet
+     */
+    private synchronized BufferedImage request(long key) {
+        BufferedImage tile = this.tiles.get(key);
+        if (tile == null && this.pending.add(key)) {
+            this.workers.execute(() -> this.render(key));
+        }
+        return tile;
+    }
+
+    private synchronized BufferedImage cached(long key) {
+        return this.tiles.get(key);
+    }
+
+    /**
+     * Private helper method run by the workers that draws a tile and caches it, unless the view has moved
+     * away from it since it was queued.
+     */
+    private void render(long key) {
+        BufferedImage tile = null;
+        try {
+            if (this.isWanted(key)) {
+                tile = this.drawTile(keyLevel(key), keyColumn(key), keyRow(key));
+            }
+        } finally {
+            synchronized (this) {
+                this.pending.remove(key);
+                if (tile != null) {
+                    this.tiles.put(key, tile);
+                    while (this.tiles.size() > this.maxTiles) {
+                        this.tiles.remove(this.tiles.keySet().iterator().next());
+                    }
+                }
+            }
+        }
+        if (tile != null) {
+            this.onTileReady.run();
+        }
+    }
+
+    /**
+     * Draws one tile. Levels that fit in a few tiles draw the roads simplified for their scale, from the list
+     * of simplified segments binned under the tile. Deeper levels find their roads in the road index, where
+     * subtrees smaller than a pixel are merged. Either way a road no longer than a pixel is drawn as one dot,
+     * once per pixel.
+     *
+     * @param level  the zoom level of the tile
+     * @param column the column of the tile at its level
+     * @param row    the row of the tile at its level
+     * @return the drawn tile
+     */
+    public BufferedImage drawTile(int level, int column, int row) {
+        BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        g.setColor(this.background);
+        g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+        g.setColor(this.roads);
+        Level projection = this.projection(level);
+        int left = column * TILE_SIZE;
+        int top = row * TILE_SIZE;
+        long[] dots = new long[TILE_SIZE * TILE_SIZE / 64];
+        if (projection.segmentStarts != null) {
+            int bin = row * projection.columns + column;
+            for (int i = projection.segmentStarts[bin]; i < projection.segmentStarts[bin + 1]; i++) {
+                int segment = projection.binnedSegments[i];
+                this.drawSegment(g, projection, projection.segments[2 * segment],
+                        projection.segments[2 * segment + 1], left, top, dots);
+            }
+        } else {
+            Graph graph = this.map.getGraph();
+            double scale = this.getScale(level);
+            double margin = 1 / scale; // roads just outside the tile can still touch its edge pixels
+            this.map.getRoadIndex().visit(this.north - (top + TILE_SIZE) / scale - margin,
+                    this.west + left / scale - margin, this.north - top / scale + margin,
+                    this.west + (left + TILE_SIZE) / scale + margin, 1 / scale,
+                    edge -> this.drawSegment(g, projection, graph.getEdgeA(edge), graph.getEdgeB(edge), left, top,
+                            dots));
+        }
+        g.dispose();
+        return tile;
+    }
+
+    /**
+     * Private helper method that draws the segment between two nodes into a tile.
+     */
+    private void drawSegment(Graphics2D g, Level projection, int a, int b, int left, int top, long[] dots) {
+        int x = projection.x[a] - left;
+        int y = projection.y[a] - top;
+        int toX = projection.x[b] - left;
+        int toY = projection.y[b] - top;
+        if (Math.abs(toX - x) > 1 || Math.abs(toY - y) > 1) {
+            g.drawLine(x, y, toX, toY);
+        } else if (x >= 0 && x < TILE_SIZE && y >= 0 && y < TILE_SIZE) {
+            int pixel = y * TILE_SIZE + x;
+            if ((dots[pixel >>> 6] & 1L << pixel) == 0) {
+                dots[pixel >>> 6] |= 1L << pixel;
+                g.fillRect(x, y, 1, 1);
+            }
+        }
+    }
+
+    /**
+     * Private helper method that returns the projection and simplified roads of a level, building them if the
+     * level is not among the few kept. Two workers may build the same level at once; one of them wins.
+     */
+    private Level projection(int level) {
+        synchronized (this.levels) {
+            Level cached = this.levels.get(level);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Level built = new Level(level);
+        synchronized (this.levels) {
+            this.levels.putIfAbsent(level, built);
+            while (this.levels.size() > CACHED_LEVELS) {
+                this.levels.remove(this.levels.keySet().iterator().next());
+            }
+            return this.levels.getOrDefault(level, built);
+        }
+    }
+
+    /**
+     * Private helper method that splits the road network into chains: maximal runs of roads whose inner
+     * intersections join exactly two roads, such as the pieces of a curved street. Loops of such intersections
+     * make chains that end where they start. Built once, under the lock of the level cache so the cache of
+     * tiles stays free for painting meanwhile.
+     */
+    private void buildChains() {
+        synchronized (this.levels) {
+            if (this.chainStarts != null) {
+                return;
+            }
+            Graph graph = this.map.getGraph();
+            int nodeCount = graph.getNodeCount();
+            boolean[] used = new boolean[graph.getEdgeCount()];
+            int[] starts = new int[16];
+            int[] nodes = new int[Math.max(16, 2 * graph.getEdgeCount())];
+            int chains = 0;
+            int size = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                for (int node = 0; node < nodeCount; node++) {
+                    // the first pass starts at the ends of chains, the second at what is left, which are loops
+                    if (pass == 0 && degree(graph, node) == 2) {
+                        continue;
+                    }
+                    for (int arc = graph.getFirstArc(node); arc < graph.getFirstArc(node + 1); arc++) {
+                        if (used[graph.getArcEdge(arc)]) {
+                            continue;
+                        }
+                        if (chains + 2 > starts.length) {
+                            starts = Arrays.copyOf(starts, 2 * starts.length);
+                        }
+                        starts[chains++] = size;
+                        nodes[size++] = node;
+                        int edge = graph.getArcEdge(arc);
+                        int current = node;
+                        while (true) {
+                            used[edge] = true;
+                            current = graph.getOtherEnd(edge, current);
+                            if (size == nodes.length) {
+                                nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                            }
+                            nodes[size++] = current;
+                            if (current == node || degree(graph, current) != 2) {
+                                break;
+                            }
+                            int next = graph.getFirstArc(current);
+                            if (graph.getArcEdge(next) == edge) {
+                                next++;
+                            }
+                            edge = graph.getArcEdge(next);
+                            if (used[edge]) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            starts[chains] = size;
+            this.chainStarts = Arrays.copyOf(starts, chains + 1);
+            this.chainNodes = Arrays.copyOf(nodes, size);
+        }
+    }
+
+    private static int degree(Graph graph, int node) {
+        return graph.getFirstArc(node + 1) - graph.getFirstArc(node);
+    }
+
+    /**
+     * Private helper method that keeps the nodes of a run of a chain needed to stay within the tolerance of
+     * it (Douglas-Peucker), marking them in keep. Works on projected pixel coordinates.
+     */
+    private static void simplify(int[] nodes, int first, int last, int[] x, int[] y, boolean[] keep) {
+        while (last - first > 1) {
+            double dx = x[nodes[last]] - x[nodes[first]];
+            double dy = y[nodes[last]] - y[nodes[first]];
+            double length = Math.hypot(dx, dy);
+            double farthest = -1;
+            int split = -1;
+            for (int i = first + 1; i < last; i++) {
+                double px = x[nodes[i]] - x[nodes[first]];
+                double py = y[nodes[i]] - y[nodes[first]];
+                double distance = length == 0 ? Math.hypot(px, py) : Math.abs(px * dy - py * dx) / length;
+                if (distance > farthest) {
+                    farthest = distance;
+                    split = i;
+                }
+            }
+            if (farthest <= TOLERANCE) {
+                return;
+            }
+            keep[split] = true;
+            simplify(nodes, first, split, x, y, keep);
+            first = split;
+        }
+    }
+
+    /**
+     * Private helper method that returns whether a tile lies over the bounding box of the map.
+     */
+    private boolean onMap(int level, int column, int row) {
+        double scale = this.getScale(level);
+        return column >= 0 && row >= 0 && column < 1 << level && row < 1 << level
+                && column * (double) TILE_SIZE <= (this.map.getRightBound() - this.west) * scale
+                && row * (double) TILE_SIZE <= (this.north - this.map.getBottomBound()) * scale;
+    }
+
+    /**
+     * Private helper method that returns whether a tile is still within the range the last view asked for.
+     */
+    private boolean isWanted(long key) {
+        long range = this.wanted;
+        int level = (int) (range >>> 56);
+        int firstColumn = (int) (range >>> 42 & 0x3fff);
+        int firstRow = (int) (range >>> 28 & 0x3fff);
+        int columns = (int) (range >>> 14 & 0x3fff);
+        int rows = (int) (range & 0x3fff);
+        int column = keyColumn(key) - firstColumn;
+        int row = keyRow(key) - firstRow;
+        // only the low bits of the tile range are stored, which is enough to tell tiles near the view apart
+        return keyLevel(key) == level && (column & 0x3fff) <= columns && (row & 0x3fff) <= rows;
+    }
+
+    private static long wantedRange(int level, int firstColumn, int firstRow, int lastColumn, int lastRow) {
+        return (long) level << 56 | (long) (firstColumn & 0x3fff) << 42 | (long) (firstRow & 0x3fff) << 28
+                | (long) Math.min(lastColumn - firstColumn, 0x3fff) << 14 | Math.min(lastRow - firstRow, 0x3fff);
+    }
+
+    private static long key(int level, int column, int row) {
+        return (long) level << 56 | (long) column << 28 | row;
+    }
+
+    private static int keyLevel(long key) {
+        return (int) (key >>> 56);
+    }
+
+    private static int keyColumn(long key) {
+        return (int) (key >>> 28 & 0xfffffff);
+    }
+
+    private static int keyRow(long key) {
+        return (int) (key & 0xfffffff);
+    }
+
+    /**
+     * The pixel coordinates of every node at one zoom level and, for levels that fit in a few tiles, the
+     * roads simplified for that scale and binned by the tiles they cross.
+     */
+    private class Level {
+        private final int[] x; // pixel column of each node at this level
+        private final int[] y; // pixel row of each node at this level
+        private final int columns; // number of tile columns binned, 0 if the level is not simplified
+        private final int[] segments; // node pairs of the simplified segments, null if not simplified
+        private final int[] segmentStarts; // start of each tile's segments in binnedSegments, by row and column
+        private final int[] binnedSegments; // indices of the segments crossing each tile, tile after tile
+
+        private Level(int level) {
+            Graph graph = map.getGraph();
+            double scale = getScale(level);
+            this.x = new int[graph.getNodeCount()];
+            this.y = new int[graph.getNodeCount()];
+            for (int node = 0; node < graph.getNodeCount(); node++) {
+                this.x[node] = (int) Math.floor((graph.getLongitude(node) - west) * scale);
+                this.y[node] = (int) Math.floor((north - graph.getLatitude(node)) * scale);
+            }
+            int tilesAcross = 1 << level;
+            if (tilesAcross > MAX_BINNED_TILES) {
+                this.columns = 0;
+                this.segments = null;
+                this.segmentStarts = null;
+                this.binnedSegments = null;
+                return;
+            }
+            buildChains();
+
+            // simplify every chain at this scale
+            int[] kept = new int[2 * graph.getEdgeCount()];
+            int count = 0;
+            boolean[] keep = new boolean[chainNodes.length];
+            for (int chain = 0; chain + 1 < chainStarts.length; chain++) {
+                int first = chainStarts[chain];
+                int last = chainStarts[chain + 1] - 1;
+                keep[first] = true;
+                keep[last] = true;
+                simplify(chainNodes, first, last, this.x, this.y, keep);
+                int previous = first;
+                for (int i = first + 1; i <= last; i++) {
+                    if (keep[i]) {
+                        kept[2 * count] = chainNodes[previous];
+                        kept[2 * count + 1] = chainNodes[i];
+                        count++;
+                        previous = i;
+                    }
+                }
+            }
+            this.segments = Arrays.copyOf(kept, 2 * count);
+
+            // bin the segments by the tiles their bounding boxes cross, counting first
+            this.columns = tilesAcross;
+            this.segmentStarts = new int[tilesAcross * tilesAcross + 1];
+            int[] range = new int[4];
+            for (int segment = 0; segment < count; segment++) {
+                this.tileRange(segment, range);
+                for (int row = range[2]; row <= range[3]; row++) {
+                    for (int column = range[0]; column <= range[1]; column++) {
+                        this.segmentStarts[row * tilesAcross + column + 1]++;
+                    }
+                }
+            }
+            for (int bin = 0; bin < tilesAcross * tilesAcross; bin++) {
+                this.segmentStarts[bin + 1] += this.segmentStarts[bin];
+            }
+            int[] next = Arrays.copyOf(this.segmentStarts, tilesAcross * tilesAcross);
+            this.binnedSegments = new int[this.segmentStarts[tilesAcross * tilesAcross]];
+            for (int segment = 0; segment < count; segment++) {
+                this.tileRange(segment, range);
+                for (int row = range[2]; row <= range[3]; row++) {
+                    for (int column = range[0]; column <= range[1]; column++) {
+                        this.binnedSegments[next[row * tilesAcross + column]++] = segment;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Finds the columns and rows of the tiles a segment's bounding box crosses, widened by a pixel since
+         * lines are drawn on both sides of their ends: {first column, last column, first row, last row}.
+         */
+        private void tileRange(int segment, int[] range) {
+            int a = this.segments[2 * segment];
+            int b = this.segments[2 * segment + 1];
+            range[0] = this.clampTile(Math.min(this.x[a], this.x[b]) - 1);
+            range[1] = this.clampTile(Math.max(this.x[a], this.x[b]) + 1);
+            range[2] = this.clampTile(Math.min(this.y[a], this.y[b]) - 1);
+            range[3] = this.clampTile(Math.max(this.y[a], this.y[b]) + 1);
+        }
+
+        private int clampTile(int pixel) {
+            return Math.max(0, Math.min(this.columns - 1, Math.floorDiv(pixel, TILE_SIZE)));
+        }
+    }
+}
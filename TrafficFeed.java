@@ -0,0 +1,119 @@
+/*
+  Name: Marcos Ibáñez Matles
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+public class TrafficFeed {
+    public static final int DEFAULT_BATCH_SIZE = 1024; // updates applied together when no blank line comes first
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+"); // separates the fields of an update
+    private final StreetMap map; // the street map whose weights are updated
+    private final int batchSize; // largest number of updates applied together
+
+    /**
+     * Creates a feed that applies weight updates to a street map in batches of the default size.
+     *
+     * @param map the street map to update
+     */
+    public TrafficFeed(StreetMap map) {
+        this(map, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a feed that applies weight updates to a street map.
+     *
+     * @param map       the street map to update
+     * @param batchSize the largest number of updates applied together
+     */
+    public TrafficFeed(StreetMap map, int batchSize) {
+        this.map = map;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Applies the weight updates of a file, see apply(BufferedReader).
+     *
+     * @param updates the file of updates
+     * @return the number of batches applied
+     * @throws IOException if the file cannot be read
+     */
+    public int apply(File updates) throws IOException {
+        try (BufferedReader in = new BufferedReader(new FileReader(updates, StandardCharsets.UTF_8), 1 << 16)) {
+            return this.apply(in);
+        }
+    }
+
+    /**
+     * Reads weight updates until the end of a stream and applies them in batches with StreetMap.updateWeights.
+     * Each line holds a road ID and either its new weight in miles, "closed" to close the road, or "open" to
+     * give it back its length. Lines starting with # are skipped. A blank line ends the current batch, so a
+     * stream can group the updates that must be seen together; a batch also ends once it reaches the batch
+     * size. Later updates of a road in the same batch win.
+     *
+     * @param in the stream of updates
+     * @return the number of batches applied
+     * @throws IOException              if the stream cannot be read
+     * @throws IllegalArgumentException if a line is malformed or names an unknown road, the batches before it
+     *                                  stay applied
+     */
+    public int apply(BufferedReader in) throws IOException {
+        Graph graph = this.map.getGraph();
+        int[] edges = new int[this.batchSize];
+        double[] weights = new double[this.batchSize];
+        int size = 0;
+        int batches = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            String update = line.strip();
+            if (update.startsWith("#")) {
+                continue;
+            }
+            if (!update.isEmpty()) {
+                String[] fields = WHITESPACE.split(update);
+                if (fields.length != 2) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": expected a road ID and a weight");
+                }
+                int edge = graph.getEdgeIds().indexOf(fields[0]);
+                if (edge < 0) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": unknown road [" + fields[0] + "]");
+                }
+                edges[size] = edge;
+                weights[size] = switch (fields[1]) {
+                    case "closed" -> Double.POSITIVE_INFINITY;
+                    case "open" -> graph.getEdgeLength(edge);
+                    default -> parseWeight(fields[1], lineNumber);
+                };
+                size++;
+            }
+            if (size > 0 && (update.isEmpty() || size == this.batchSize)) {
+                this.map.updateWeights(Arrays.copyOf(edges, size), Arrays.copyOf(weights, size));
+                batches++;
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            this.map.updateWeights(Arrays.copyOf(edges, size), Arrays.copyOf(weights, size));
+            batches++;
+        }
+        return batches;
+    }
+
+    /**
+     * Private helper method that parses a weight in miles.
+     */
+    private static double parseWeight(String field, int lineNumber) {
+        try {
+            return Double.parseDouble(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": malformed weight " + field);
+        }
+    }
+}